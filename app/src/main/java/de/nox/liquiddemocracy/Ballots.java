@@ -0,0 +1,267 @@
+package de.nox.liquiddemocracy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/** The Ballots.
+ * Many ballots (issues) voted at once by the same electorate.
+ *
+ * The voters' names are interned once, in one table all ballots share (@see NameTable),
+ * each ballot is a LiquidDemocracy with only its own choices (int arrays by the shared ids)
+ * and its own alternatives. A voter who did not vote on a ballot (and was not delegated to)
+ * is absent from it, they are not counted there, not even as invalid.
+ *
+ * Voting is not thread safe (the table is shared), the tally calculates the ballots in parallel.
+ *
+ * Memory: each ballot keeps its per-voter arrays (about 24 bytes per voter) indexed by the shared ids,
+ * up to the highest id voting on it, with the absent voters below. A ballot only a few voters vote on
+ * costs as much as the electorate which came before them: up to ballots * voters * 24 bytes in total.
+ * That is fine for (many) voters on a few dozen ballots; many small ballots of a huge electorate need
+ * their own tables (separate LiquidDemocracy objects) instead.
+ *
+ * Default delegations: a voter may delegate to someone for all ballots (topics) they do not vote on themselves
+ * ("Alice for topic X, otherwise Bob"). With them, every voter of the electorate counts on every topic
+ * (@see getTopicResults): their own choice on the topic, otherwise their default delegation, otherwise invalid.
+ */
+public class Ballots {
+
+	/* Values of the exits and topic choices (@see getTopicResults). */
+	private static final int NO_CHOICE = -1;
+	private static final int INVALID = -1;
+	private static final int UNRESOLVED = -2;
+	private static final int ON_PATH = -3;
+
+	private final NameTable voters = new NameTable();
+	private final Map<String, LiquidDemocracy> ballots = new LinkedHashMap<>();
+
+	private int[] defaults = new int[0]; // voter id -> id of the default delegate, or NO_CHOICE (grown by need)
+
+	/** Get the ballot with the given id, a new one if it does not exist yet.
+	 * @throws NullPointerException if the id is null. */
+	public LiquidDemocracy ballot(String id) throws NullPointerException {
+		if (id == null) {
+			throw new NullPointerException("Ballot id must not be null.");
+		}
+		return ballots.computeIfAbsent(id, k -> new LiquidDemocracy(voters));
+	}
+
+	/** Add a pick on a ballot, @see LiquidDemocracy.pick. */
+	public void pick(String ballot, String voter, String alternative) throws NullPointerException {
+		ballot(ballot).pick(voter, alternative);
+	}
+
+	/** Add a delegation on a ballot, @see LiquidDemocracy.delegate. */
+	public void delegate(String ballot, String voter, String secondVoter) throws NullPointerException {
+		ballot(ballot).delegate(voter, secondVoter);
+	}
+
+	/** Delegate on all topics, which the voter does not vote on (the last default counts).
+	 * @param delegate the default delegate, null to take the default back.
+	 * @throws NullPointerException if the voter is null. */
+	public void delegateByDefault(String voter, String delegate) throws NullPointerException {
+		if (voter == null) {
+			throw new NullPointerException("Voters must not be null");
+		}
+
+		int v = voters.intern(voter);
+		int d = delegate != null ? voters.intern(delegate) : NO_CHOICE;
+
+		if (voters.size() > defaults.length) {
+			int old = defaults.length;
+			defaults = Arrays.copyOf(defaults, Math.max(voters.size(), old + (old >> 1) + 1));
+			Arrays.fill(defaults, old, defaults.length, NO_CHOICE);
+		}
+		defaults[v] = d;
+	}
+
+	private int defaultOf(int voter) {
+		return voter < defaults.length ? defaults[voter] : NO_CHOICE;
+	}
+
+	/** Ids of all ballots, in the order they were opened (read only, opening a ballot adds to it). */
+	public Set<String> getBallots() {
+		return Collections.unmodifiableSet(ballots.keySet());
+	}
+
+	/** Names of all voters, who voted on any ballot. */
+	public Set<String> getVoters() {
+		Set<String> names = new HashSet<>(Math.max(16, (int) (voters.size() / .75f) + 1));
+		for (int v = 0, n = voters.size(); v < n; v++) names.add(voters.name(v));
+		return names;
+	}
+
+	/** The results of all ballots, @see LiquidDemocracy.getResults. */
+	public Map<String, LiquidDemocracy.Result> getResults() {
+		return tally(LiquidDemocracy::getResults);
+	}
+
+	/** Count every ballot, the ballots in parallel (each ballot only touches its own arrays).
+	 * @param count the result of one ballot, e.g. LiquidDemocracy::getResults.
+	 * @return the ballots' ids mapped to their results, in the order they were opened. */
+	public Map<String, LiquidDemocracy.Result> tally(Function<LiquidDemocracy, LiquidDemocracy.Result> count) {
+		List<LiquidDemocracy> democracies = new ArrayList<>(ballots.values());
+		List<LiquidDemocracy.Result> results = democracies.parallelStream().map(count).collect(Collectors.toList());
+
+		Map<String, LiquidDemocracy.Result> tally = new LinkedHashMap<>();
+		int i = 0;
+		for (String id : ballots.keySet()) tally.put(id, results.get(i++));
+		return tally;
+	}
+
+	/** The results of all topics (ballots) with the default delegations, each voter counts on each topic.
+	 *
+	 * Resolving each topic on its own would walk the default chains once per topic.
+	 * Instead they are walked once for all: each voter's default chain is cut short at its exit,
+	 * the first voter on it who voted on any topic (only there the topics differ), or invalid.
+	 * Then per topic only these (few) voters are resolved, each weighted with the voters who exit at them.
+	 * => O(voters) once, then O(voters who voted on topics) per topic, the topics in parallel.
+	 *
+	 * @return the topics' ids mapped to their results, in the order they were opened. */
+	public Map<String, LiquidDemocracy.Result> getTopicResults() {
+		int n = voters.size();
+		List<LiquidDemocracy> topics = new ArrayList<>(ballots.values());
+
+		/* Who voted on any topic. */
+		BitSet voted = new BitSet(n);
+		for (LiquidDemocracy topic : topics) {
+			for (int v = 0, m = topic.voterIds(); v < m; v++) {
+				if (topic.choiceOf(v) != NO_CHOICE) voted.set(v);
+			}
+		}
+
+		int[] exits = exits(voted, n);
+
+		/* The voters who voted, numbered densely, weighted with the voters exiting at them. */
+		int[] voting = voted.stream().toArray();
+		int[] index = new int[n]; // voter id -> index in voting
+		for (int i = 0; i < voting.length; i++) index[voting[i]] = i;
+
+		long[] weights = new long[voting.length];
+		for (int v = 0; v < n; v++) {
+			if (exits[v] >= 0) weights[index[exits[v]]]++;
+		}
+
+		List<LiquidDemocracy.Result> results = topics.parallelStream()
+			.map(topic -> tallyTopic(topic, voting, index, weights, exits, n))
+			.collect(Collectors.toList());
+
+		Map<String, LiquidDemocracy.Result> tally = new LinkedHashMap<>();
+		int i = 0;
+		for (String id : ballots.keySet()) tally.put(id, results.get(i++));
+		return tally;
+	}
+
+	/** Follow each voter's default chain (memoized, once per voter) up to the first voter who voted on a topic.
+	 * @return voter id -> that voter's id, or INVALID if the chain ends without (no default, or a cycle). */
+	private int[] exits(BitSet voted, int n) {
+		int[] exits = new int[n];
+		Arrays.fill(exits, UNRESOLVED);
+		int[] path = new int[16];
+
+		for (int v = 0; v < n; v++) {
+			int length = 0;
+			int exit;
+			int current = v;
+
+			while (true) {
+				if (exits[current] >= INVALID) {
+					exit = exits[current]; // already known.
+					break;
+				}
+				if (exits[current] == ON_PATH) {
+					exit = INVALID; // default cycle, nobody on it voted.
+					break;
+				}
+
+				exits[current] = ON_PATH;
+				if (length == path.length) path = Arrays.copyOf(path, length * 2);
+				path[length++] = current;
+
+				if (voted.get(current)) {
+					exit = current;
+					break;
+				}
+
+				current = defaultOf(current);
+				if (current < 0) {
+					exit = INVALID; // no default.
+					break;
+				}
+			}
+
+			for (int i = 0; i < length; i++) exits[path[i]] = exit;
+		}
+		return exits;
+	}
+
+	/** Resolve the voters who voted (on any topic) for one topic, count them with their weights.
+	 * Who did not vote on this topic follows their default (to the next exit). */
+	private LiquidDemocracy.Result tallyTopic(LiquidDemocracy topic,
+			int[] voting, int[] index, long[] weights, int[] exits, int n) {
+		int[] chosen = new int[voting.length]; // index -> alternative id, INVALID, UNRESOLVED or ON_PATH
+		Arrays.fill(chosen, UNRESOLVED);
+		long[] votes = new long[topic.alternativeCount()];
+		long valid = 0;
+		int[] path = new int[16];
+
+		for (int i = 0; i < voting.length; i++) {
+			int length = 0;
+			int choice;
+			int current = i;
+
+			while (true) {
+				if (chosen[current] >= INVALID) {
+					choice = chosen[current];
+					break;
+				}
+				if (chosen[current] == ON_PATH) {
+					choice = INVALID; // cycle.
+					break;
+				}
+
+				chosen[current] = ON_PATH;
+				if (length == path.length) path = Arrays.copyOf(path, length * 2);
+				path[length++] = current;
+
+				/* Own choice on this topic, otherwise the default, then on at the delegate's exit. */
+				int own = topic.choiceOf(voting[current]);
+				if (own < NO_CHOICE) {
+					choice = LiquidDemocracy.alternativeOf(own);
+					break;
+				}
+
+				int delegate = own >= 0 ? own : defaultOf(voting[current]);
+				int exit = delegate >= 0 ? exits[delegate] : INVALID;
+				if (exit < 0) {
+					choice = INVALID;
+					break;
+				}
+				current = index[exit];
+			}
+
+			for (int j = 0; j < length; j++) {
+				chosen[path[j]] = choice;
+				if (choice >= 0) {
+					votes[choice] += weights[path[j]];
+					valid += weights[path[j]];
+				}
+			}
+		}
+
+		Map<String, Long> results = new HashMap<>();
+		for (int a = 0; a < votes.length; a++) {
+			if (votes[a] > 0) results.put(topic.alternativeName(a), votes[a]);
+		}
+		return new LiquidDemocracy.Result(results, n - valid);
+	}
+}
@@ -0,0 +1,104 @@
+package de.nox.liquiddemocracy;
+
+import java.util.Arrays;
+
+/** The Compactor.
+ * Reduces a stream of picks and delegations to the last command of each voter,
+ * before it reaches the LiquidDemocracy: Only the last choice counts anyway (@see LiquidDemocracy.pick),
+ * so earlier choices would just be work and (former) delegations to remember.
+ *
+ * The compacted commands give the same voters, results and choices as the whole stream:
+ * - A voter without any valid choice is still registered (as invalid voter).
+ * - A voter who was only delegated to in an overwritten delegation is still registered.
+ * Only alternatives which were picked solely in overwritten picks are not known afterwards,
+ * they had no votes anyway.
+ *
+ * The voters are interned to dense ids (@see NameTable), the last command is kept per id.
+ */
+public class Compactor {
+
+	/* Kinds of a voter's last command. */
+	private static final byte NONE = 0; // only registered (mentioned, or an invalid choice)
+	private static final byte PICK = 1;
+	private static final byte DELEGATE = 2;
+
+	private final NameTable voters = new NameTable();
+	private byte[] kinds = new byte[16]; // voter id -> kind of last command
+	private String[] targets = new String[16]; // voter id -> alternative or second voter of last command
+	private long commands; // all added commands
+
+	/** Add a pick, @see LiquidDemocracy.pick.
+	 * @throws NullPointerException if the voter is null. */
+	public void pick(String voter, String alternative) throws NullPointerException {
+		add(voter, alternative, false);
+	}
+
+	/** Add a delegation, @see LiquidDemocracy.delegate.
+	 * @throws NullPointerException if the voter is null. */
+	public void delegate(String voter, String secondVoter) throws NullPointerException {
+		add(voter, secondVoter, true);
+	}
+
+	/** Add all commands of the batch, in order. */
+	public void add(LiquidDemocracy.Batch batch) {
+		for (int i = 0, n = batch.size(); i < n; i++) {
+			add(batch.voter(i), batch.target(i), batch.isDelegation(i));
+		}
+	}
+
+	private void add(String voter, String target, boolean delegation) {
+		if (voter == null) {
+			/* Unacceptable command. */
+			throw new NullPointerException("Voters must not be null");
+		}
+
+		commands++;
+		int id = register(voter);
+
+		if (target != null) {
+			/* The last valid choice overwrites. */
+			if (delegation) register(target); // the second voter exists, even if overwritten later.
+
+			kinds[id] = delegation ? DELEGATE : PICK;
+			targets[id] = target;
+		}
+	}
+
+	/** Id of the voter, new voters are registered without command. */
+	private int register(String voter) {
+		int id = voters.intern(voter);
+
+		if (id == kinds.length) {
+			int capacity = id + (id >> 1) + 1;
+			kinds = Arrays.copyOf(kinds, capacity);
+			targets = Arrays.copyOf(targets, capacity);
+		}
+		return id;
+	}
+
+	/** Number of added commands. */
+	public long commands() {
+		return commands;
+	}
+
+	/** Number of voters (also the number of compacted commands). */
+	public int voters() {
+		return voters.size();
+	}
+
+	/** The last command of each voter (or an invalid pick, just to register them), in order of their first appearance. */
+	public LiquidDemocracy.Batch toBatch() {
+		int n = voters.size();
+		LiquidDemocracy.Batch batch = new LiquidDemocracy.Batch(n);
+
+		for (int id = 0; id < n; id++) {
+			switch (kinds[id]) {
+				case PICK: batch.pick(voters.name(id), targets[id]); break;
+				case DELEGATE: batch.delegate(voters.name(id), targets[id]); break;
+
+				default: batch.pick(voters.name(id), null); break; // only registered.
+			}
+		}
+		return batch;
+	}
+}
@@ -0,0 +1,168 @@
+package de.nox.liquiddemocracy;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/** The ConcurrentLiquidDemocracy.
+ * A LiquidDemocracy many threads can vote on at once.
+ *
+ * The voters are striped by their name's hash: each stripe collects the commands of its voters
+ * under its own lock. The names are interned right there, into a table the threads share (@see StripedNameTable),
+ * so the hashing and comparing of names (most of the work) is done by the voting threads at the same time.
+ * Full batches of ids are handed over to one LiquidDemocracy (@see LiquidDemocracy.applyInterned),
+ * only setting the choices (and interning the few alternatives) is done one batch after another.
+ *
+ * Only the last choice of a voter counts, as before:
+ * - All commands of a voter are in the same stripe, in the order they were given
+ *   (a stripe keeps its lock while handing over, so its batches can not overtake each other).
+ * - The results of commands of different voters commute, their order does not change any result.
+ *   The order of the voters does change (the ids are interleaved by the name table's stripes, not first seen),
+ *   so the order of the cursors, pages and ties is not the order in which the threads voted.
+ *
+ * A request (results, choices, ...) hands over all collected commands first,
+ * so it sees every command which was given before it was called.
+ */
+public class ConcurrentLiquidDemocracy {
+
+	static final int BATCH_SIZE = 1024; // commands collected per stripe before handing over
+
+	private static final int NO_DELEGATE = -1;
+
+	private final StripedNameTable voters; // shared by the voting threads and the democracy
+	private final LiquidDemocracy democracy; // guarded by itself
+	private final Stripe[] stripes;
+
+	/** Commands of the voters of one stripe, not handed over yet (guarded by the stripe). */
+	private static final class Stripe {
+		final int[] voters = new int[BATCH_SIZE];
+		final int[] delegates = new int[BATCH_SIZE]; // id of the delegate, or NO_DELEGATE (as LiquidDemocracy's NO_CHOICE)
+		final String[] picks = new String[BATCH_SIZE]; // the picked alternative, null if delegating (or nothing)
+		int size;
+	}
+
+	/** Constructor, stripes for the available cores. */
+	public ConcurrentLiquidDemocracy() {
+		this(Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	/** Constructor.
+	 * @param stripes (at least) how many threads can vote at the same time without waiting. */
+	public ConcurrentLiquidDemocracy(int stripes) {
+		int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1; // power of two
+		this.voters = new StripedNameTable(n);
+		this.democracy = new LiquidDemocracy(voters);
+		this.stripes = new Stripe[n];
+		for (int i = 0; i < n; i++) this.stripes[i] = new Stripe();
+	}
+
+	private Stripe stripeOf(String voter) {
+		int h = voter.hashCode() * 0x9E3779B9;
+		return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+	}
+
+	/** Hand over the stripe's commands (the caller holds the stripe's lock). */
+	private void handOver(Stripe stripe) {
+		synchronized (democracy) {
+			democracy.applyInterned(stripe.voters, stripe.delegates, stripe.picks, stripe.size);
+		}
+		Arrays.fill(stripe.picks, 0, stripe.size, null);
+		stripe.size = 0;
+	}
+
+	/** Intern and collect a command (the caller holds the stripe's lock), hand over the batch when full. */
+	private void add(Stripe stripe, String voter, String delegate, String pick) {
+		int i = stripe.size++;
+		stripe.voters[i] = voters.intern(voter);
+		stripe.delegates[i] = delegate != null ? voters.intern(delegate) : NO_DELEGATE;
+		stripe.picks[i] = pick;
+		if (stripe.size == BATCH_SIZE) handOver(stripe);
+	}
+
+	/** Hand over the collected commands of all stripes. */
+	public void flush() {
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				if (stripe.size > 0) handOver(stripe);
+			}
+		}
+	}
+
+	/** Add a new pick, @see LiquidDemocracy.pick.
+	 * @throws NullPointerException if voter's name is null, otherwise only vote is invalid. */
+	public void pick(String voter, String alternative) throws NullPointerException {
+		if (voter == null) throw new NullPointerException("Voters must not be null");
+
+		Stripe stripe = stripeOf(voter);
+		synchronized (stripe) {
+			add(stripe, voter, null, alternative);
+		}
+	}
+
+	/** Add a new delegation, @see LiquidDemocracy.delegate.
+	 * @throws NullPointerException if the first voter's name is null. */
+	public void delegate(String voter, String secondVoter) throws NullPointerException {
+		if (voter == null) throw new NullPointerException("Voters must not be null");
+
+		Stripe stripe = stripeOf(voter);
+		synchronized (stripe) {
+			add(stripe, voter, secondVoter, null);
+		}
+	}
+
+	/** @see LiquidDemocracy.setParallel */
+	public void setParallel(boolean parallel) {
+		synchronized (democracy) {
+			democracy.setParallel(parallel);
+		}
+	}
+
+	/** @see LiquidDemocracy.getResults */
+	public LiquidDemocracy.Result getResults() {
+		flush();
+		synchronized (democracy) {
+			return democracy.getResults();
+		}
+	}
+
+	/** A consistent view of the results with all commands given before (@see LiquidDemocracy.view).
+	 * Reading the view does not block the voting threads, taking it costs about what changed since the last one. */
+	public LiquidDemocracy.View view() {
+		flush();
+		synchronized (democracy) {
+			return democracy.view();
+		}
+	}
+
+	/** @see LiquidDemocracy.getResultingChoices */
+	public Map<String, String> getResultingChoices() {
+		flush();
+		synchronized (democracy) {
+			return democracy.getResultingChoices();
+		}
+	}
+
+	/** @see LiquidDemocracy.getCycleParticipants */
+	public Set<String> getCycleParticipants() {
+		flush();
+		synchronized (democracy) {
+			return democracy.getCycleParticipants();
+		}
+	}
+
+	/** @see LiquidDemocracy.getVoters */
+	public Set<String> getVoters() {
+		flush();
+		synchronized (democracy) {
+			return democracy.getVoters();
+		}
+	}
+
+	/** @see LiquidDemocracy.getAlternatives */
+	public Set<String> getAlternatives() {
+		flush();
+		synchronized (democracy) {
+			return democracy.getAlternatives();
+		}
+	}
+}
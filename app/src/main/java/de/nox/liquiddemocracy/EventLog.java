@@ -0,0 +1,310 @@
+package de.nox.liquiddemocracy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/** The EventLog.
+ * Makes the votes durable: every pick and delegation is appended to a binary log,
+ * from time to time the whole democracy is saved as checkpoint (@see SnapshotFile).
+ * After a crash, the latest checkpoint is loaded and only the log after it is voted again (@see recover).
+ *
+ * Group commit: Appended commands are only buffered, a commit writes all of them
+ * as one frame and forces it to the disk once. So the cost of the fsync is shared
+ * by all commands (and threads) since the last commit.
+ *
+ * Files in the log's directory:
+ *   votes.log                   frames: payload length, CRC32, command count, commands
+ *                               (command: kind, voter, target; names as byte length and UTF-8, null target: -1)
+ *   checkpoint-{offset}.bin     snapshot of the democracy with all frames before the (hex) log offset
+ *
+ * A frame which was not completely written (crash while committing) is cut off while recovering.
+ */
+public final class EventLog implements Closeable {
+
+	static final String LOG_FILE = "votes.log";
+	static final long CHECKPOINT_INTERVAL = 64 << 20; // log bytes between checkpoints
+
+	private static final byte PICK = 0, DELEGATE = 1;
+	private static final int FRAME_HEADER = 3 * Integer.BYTES;
+
+	private final Path directory;
+	private final FileChannel log;
+	private final long checkpointInterval;
+
+	private final Object commitLock = new Object(); // one committing thread at a time.
+
+	/* Pending commands (guarded by this). */
+	private ByteArrayOutputStream pending = new ByteArrayOutputStream(1 << 16);
+	private int pendingCommands;
+
+	private long offset; // end of the committed log
+	private long checkpointOffset; // log offset of the latest checkpoint
+
+	/* Statistics. */
+	private long commits, commands, forceNanos;
+
+	/** Open (or create) the log in the given directory, with the default checkpoint interval. */
+	public EventLog(Path directory) throws IOException {
+		this(directory, CHECKPOINT_INTERVAL);
+	}
+
+	/** Open (or create) the log in the given directory.
+	 * @param checkpointInterval log bytes after which a checkpoint is due (@see checkpointIfDue). */
+	public EventLog(Path directory, long checkpointInterval) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.checkpointInterval = checkpointInterval;
+		this.log = FileChannel.open(directory.resolve(LOG_FILE),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.offset = log.size(); // append after all, if not recovered.
+	}
+
+	/** Load the latest checkpoint and vote all logged commands after it again.
+	 * A torn frame at the end of the log is cut off, new commands are appended after the last complete one.
+	 * @return the recovered democracy (a new one, if there is nothing to recover). */
+	public LiquidDemocracy recover() throws IOException {
+		LiquidDemocracy democracy = null;
+		checkpointOffset = 0;
+
+		/* Latest checkpoint which can be read (and is not beyond the log). */
+		for (Path checkpoint : checkpoints()) {
+			long at = checkpointOffset(checkpoint);
+			if (at > log.size()) continue;
+
+			try {
+				democracy = LiquidDemocracy.load(checkpoint);
+				checkpointOffset = at;
+				break;
+			} catch (IOException e) {
+				System.err.println("[Warning] Skip broken checkpoint " + checkpoint + ": " + e.getMessage());
+			}
+		}
+		if (democracy == null) democracy = new LiquidDemocracy();
+
+		/* Replay the frames after it. */
+		long position = checkpointOffset;
+		long size = log.size();
+		ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+		LiquidDemocracy.Batch batch = new LiquidDemocracy.Batch(1024);
+		CRC32 crc = new CRC32();
+
+		while (position + FRAME_HEADER <= size) {
+			header.clear();
+			readFully(header, position);
+			header.flip();
+
+			int length = header.getInt();
+			int checksum = header.getInt();
+			int count = header.getInt();
+
+			if (length < 0 || position + FRAME_HEADER + length > size) break; // torn frame
+
+			ByteBuffer payload = ByteBuffer.allocate(length);
+			readFully(payload, position + FRAME_HEADER);
+
+			crc.reset();
+			crc.update(payload.array(), 0, length);
+			if ((int) crc.getValue() != checksum) break; // torn frame
+
+			payload.flip();
+			decode(payload, count, batch);
+			democracy.applyBatch(batch);
+			batch.clear();
+
+			position += FRAME_HEADER + length;
+		}
+
+		if (position < size) {
+			System.err.println("[Warning] Cut off " + (size - position) + " bytes of incomplete log.");
+			log.truncate(position);
+			log.force(true);
+		}
+
+		offset = position;
+		return democracy;
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = log.read(buffer, position);
+			if (n < 0) throw new IOException("Log ends unexpectedly.");
+			position += n;
+		}
+	}
+
+	/** The checkpoint files, latest first. */
+	private List<Path> checkpoints() throws IOException {
+		List<Path> checkpoints = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "checkpoint-*.bin")) {
+			for (Path file : files) {
+				if (checkpointOffset(file) >= 0) checkpoints.add(file);
+			}
+		}
+		checkpoints.sort((a, b) -> Long.compare(checkpointOffset(b), checkpointOffset(a)));
+		return checkpoints;
+	}
+
+	/** Log offset in the checkpoint's file name, or -1 if it is none. */
+	private static long checkpointOffset(Path file) {
+		String name = file.getFileName().toString();
+		try {
+			return Long.parseLong(name.substring("checkpoint-".length(), name.length() - ".bin".length()), 16);
+		} catch (NumberFormatException | IndexOutOfBoundsException e) {
+			return -1;
+		}
+	}
+
+	/** Append the commands of the batch, they are durable after the next commit. */
+	public synchronized void append(LiquidDemocracy.Batch batch) {
+		for (int i = 0, n = batch.size(); i < n; i++) {
+			pending.write(batch.isDelegation(i) ? DELEGATE : PICK);
+			writeName(batch.voter(i));
+			writeName(batch.target(i));
+		}
+		pendingCommands += batch.size();
+	}
+
+	private void writeName(String name) {
+		if (name == null) {
+			writeInt(-1);
+			return;
+		}
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		writeInt(bytes.length);
+		pending.write(bytes, 0, bytes.length);
+	}
+
+	private void writeInt(int value) {
+		pending.write(value >>> 24);
+		pending.write(value >>> 16);
+		pending.write(value >>> 8);
+		pending.write(value);
+	}
+
+	/** Decode `count` commands of a frame into the batch. */
+	private static void decode(ByteBuffer payload, int count, LiquidDemocracy.Batch batch) throws IOException {
+		try {
+			for (int i = 0; i < count; i++) {
+				byte kind = payload.get();
+				String voter = readName(payload);
+				String target = readName(payload);
+
+				if (kind == DELEGATE) batch.delegate(voter, target);
+				else batch.pick(voter, target);
+			}
+		} catch (RuntimeException e) {
+			throw new IOException("Broken log frame", e);
+		}
+	}
+
+	private static String readName(ByteBuffer payload) {
+		int length = payload.getInt();
+		if (length < 0) return null;
+
+		String name = new String(payload.array(), payload.position(), length, StandardCharsets.UTF_8);
+		payload.position(payload.position() + length);
+		return name;
+	}
+
+	/** Write all appended commands as one frame and force it to the disk.
+	 * Commands appended by other threads meanwhile are committed with the next call. */
+	public void commit() throws IOException {
+		synchronized (commitLock) {
+			ByteArrayOutputStream frame;
+			int count;
+
+			synchronized (this) {
+				if (pendingCommands == 0) return; // nothing (left) to commit.
+
+				frame = pending;
+				count = pendingCommands;
+				pending = new ByteArrayOutputStream(Math.max(1 << 16, frame.size()));
+				pendingCommands = 0;
+			}
+
+			byte[] payload = frame.toByteArray();
+			CRC32 crc = new CRC32();
+			crc.update(payload, 0, payload.length);
+
+			ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER + payload.length);
+			buffer.putInt(payload.length).putInt((int) crc.getValue()).putInt(count).put(payload);
+			buffer.flip();
+
+			long position = offset;
+			while (buffer.hasRemaining()) position += log.write(buffer, position);
+
+			long start = System.nanoTime();
+			log.force(false);
+			forceNanos += System.nanoTime() - start;
+
+			offset = position;
+			commits++;
+			commands += count;
+		}
+	}
+
+	/** Commit, then save the democracy as checkpoint of the committed log.
+	 * The democracy must have voted exactly the committed commands.
+	 * Older checkpoints are deleted afterwards. */
+	public void checkpoint(LiquidDemocracy democracy) throws IOException {
+		synchronized (commitLock) {
+			commit();
+
+			Path temporary = directory.resolve("checkpoint.tmp");
+			democracy.save(temporary, true);
+			Files.move(temporary, directory.resolve(String.format("checkpoint-%016x.bin", offset)),
+					StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			checkpointOffset = offset;
+
+			for (Path old : checkpoints()) {
+				if (checkpointOffset(old) < checkpointOffset) Files.deleteIfExists(old);
+			}
+		}
+	}
+
+	/** Checkpoint (@see checkpoint), if the log grew by the checkpoint interval since the last one.
+	 * @return true if a checkpoint was saved. */
+	public boolean checkpointIfDue(LiquidDemocracy democracy) throws IOException {
+		synchronized (commitLock) {
+			if (offset - checkpointOffset < checkpointInterval) return false;
+			checkpoint(democracy);
+			return true;
+		}
+	}
+
+	/** Size of the committed log. */
+	public long size() {
+		synchronized (commitLock) {
+			return offset;
+		}
+	}
+
+	/** How many commits and how expensive the forces were. */
+	public String report() {
+		synchronized (commitLock) {
+			return String.format("[Journal] %d commands in %d commits, %d us per force, %d ns per command",
+					commands, commits, commits > 0 ? forceNanos / commits / 1000 : 0,
+					commands > 0 ? forceNanos / commands : 0);
+		}
+	}
+
+	/** Commit the rest and close the log (no checkpoint). */
+	@Override public void close() throws IOException {
+		try {
+			commit();
+		} finally {
+			log.close();
+		}
+	}
+}
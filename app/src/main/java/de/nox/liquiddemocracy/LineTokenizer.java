@@ -0,0 +1,144 @@
+package de.nox.liquiddemocracy;
+
+/** The LineTokenizer.
+ * Parses one input line into (voter, action, choice) in a single scan over the characters.
+ *
+ * This is the hand written version of the former split in Main.readLine:
+ *
+ *   line.split("\\s+(?=(pick|delegates?))|(?<=(pick|delegate))s?\\s+")
+ *
+ * A separator is a white space run in front of "pick"/"delegate",
+ * or the (optional) "s" and white space run after "pick"/"delegate".
+ * The first part is the voter, the second the action (only exactly "pick" or "delegate"),
+ * the third the choice; the voter and choice are trimmed, anything after is ignored.
+ *
+ * Apart from the voter's and choice's names, nothing is allocated:
+ * the actions are the constant Strings and the result is written into a reused command.
+ */
+final class LineTokenizer {
+
+	static final String PICK = "pick";
+	static final String DELEGATE = "delegate";
+
+	private LineTokenizer() {}
+
+	/** Parse the line into the given command.
+	 * @return the given command, now holding (voter, action, choice) of the line. */
+	static Main.ReadCommand parse(CharSequence line, Main.ReadCommand into) {
+		return parse(line, 0, line.length(), into);
+	}
+
+	/** Parse the characters [start, end) of the given sequence as one line into the given command.
+	 * @return the given command, now holding (voter, action, choice) of the line. */
+	static Main.ReadCommand parse(CharSequence line, int start, int end, Main.ReadCommand into) {
+		String voter = null, action = null, choice = null;
+
+		long first = nextSeparator(line, start, start, end);
+
+		/* Voter: all before the first separator (or the whole line). */
+		int voterEnd = first < 0 ? end : from(first);
+		if (voterEnd > start) voter = trimmed(line, start, voterEnd);
+
+		if (first >= 0) {
+			int actionStart = to(first);
+			long second = nextSeparator(line, start, actionStart, end);
+			int actionEnd = second < 0 ? end : from(second);
+
+			/* Action: the exact verb (an "s" is already part of the separator). */
+			action = action(line, actionStart, actionEnd);
+
+			if (second >= 0) {
+				int choiceStart = to(second);
+				long third = nextSeparator(line, start, choiceStart, end);
+				int choiceEnd = third < 0 ? end : from(third);
+
+				if (choiceEnd > choiceStart) choice = trimmed(line, choiceStart, choiceEnd);
+			}
+		}
+
+		return into.set(voter, action, choice);
+	}
+
+	/** White space as in a regex' \s. */
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+	}
+
+	/** Does the sequence have the given word at the given position? */
+	private static boolean matches(CharSequence line, int at, int end, String word) {
+		int length = word.length();
+		if (at < 0 || at + length > end) return false;
+
+		for (int i = 0; i < length; i++) {
+			if (line.charAt(at + i) != word.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	/** Does "pick" or "delegate" start at the given position? */
+	private static boolean startsWithVerb(CharSequence line, int at, int end) {
+		return matches(line, at, end, PICK) || matches(line, at, end, DELEGATE);
+	}
+
+	/** Does "pick" or "delegate" end just before the given position (but not before the line's start)? */
+	private static boolean endsWithVerb(CharSequence line, int start, int at) {
+		return (at - PICK.length() >= start && matches(line, at - PICK.length(), at, PICK))
+			|| (at - DELEGATE.length() >= start && matches(line, at - DELEGATE.length(), at, DELEGATE));
+	}
+
+	/** End of the white space run starting at the given position. */
+	private static int skipSpaces(CharSequence line, int at, int end) {
+		while (at < end && isSpace(line.charAt(at))) at++;
+		return at;
+	}
+
+	/** Find the next separator, starting the search at the given position.
+	 * @return the separator's [from, to) packed into a long, or -1 if there is none. */
+	private static long nextSeparator(CharSequence line, int start, int at, int end) {
+		for (int i = at; i < end; i++) {
+			char c = line.charAt(i);
+
+			if (isSpace(c)) {
+				int runEnd = skipSpaces(line, i, end);
+
+				/* Spaces in front of a verb, or after a verb. */
+				if (startsWithVerb(line, runEnd, end) || endsWithVerb(line, start, i)) {
+					return span(i, runEnd);
+				}
+
+				i = runEnd - 1; // nothing starts within this run.
+
+			} else if (c == 's' && i + 1 < end && isSpace(line.charAt(i + 1)) && endsWithVerb(line, start, i)) {
+				/* Third person's s after a verb, then spaces. */
+				return span(i, skipSpaces(line, i + 1, end));
+			}
+		}
+		return -1;
+	}
+
+	private static long span(int from, int to) {
+		return ((long) from << 32) | to;
+	}
+
+	private static int from(long span) {
+		return (int) (span >>> 32);
+	}
+
+	private static int to(long span) {
+		return (int) span;
+	}
+
+	/** The constant verb, if the part is exactly one, otherwise null. */
+	private static String action(CharSequence line, int from, int to) {
+		if (to - from == PICK.length() && matches(line, from, to, PICK)) return PICK;
+		if (to - from == DELEGATE.length() && matches(line, from, to, DELEGATE)) return DELEGATE;
+		return null;
+	}
+
+	/** The part without leading and trailing white space (as String.trim). */
+	private static String trimmed(CharSequence line, int from, int to) {
+		while (from < to && line.charAt(from) <= ' ') from++;
+		while (to > from && line.charAt(to - 1) <= ' ') to--;
+		return line.subSequence(from, to).toString();
+	}
+}
@@ -1,11 +1,19 @@
 package de.nox.liquiddemocracy;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.IntToLongFunction;
 
 /** The LiquidDemocracy class.
   * This is a graph (optimally a tree) structure that lists all alternatives and voters.
@@ -33,94 +41,205 @@ import java.util.stream.Collectors;
   * the first requested SPEC (counting the voters) in the moment it was needed.
   * So calculating what was chosen by whom is an own earlier step.
   *
+  *
+  * Issue: Memory for large electorates.
+  * A voter object per voter (with its own chosenBy set and map entries) costs some hundred bytes.
+  * Solution: Voter and alternative names are interned to dense ids (@see NameTable),
+  * the graph itself are plain int arrays indexed by the voter's id.
+  * A voter's choice is either a delegation (the other voter's id, >= 0),
+  * a pick (encoded alternative id, <= -2) or nothing (NO_CHOICE).
+  * The reverse (who delegated to a voter) are lists linked through the same ids,
+  * three ints per voter, and only the current delegations are in them.
+  *
   * @throws NullPointerException if the first voter is null
   */
 public class LiquidDemocracy {
 
-	private Map<String, Voter> voters; // all voters (with name as key for quick access)
-	private Map<String, Alternative> alternatives; // all alternatives (with name as key for quick access)
+	/* Encoding of a voter's choice in `targets`. */
+	private static final int NO_CHOICE = -1; // nothing (valid) chosen yet.
 
-	private Map<Voter, Alternative> choices; // calculating
-	private boolean calculated = false;
+	/* Values of `resolved`: an alternative id (>= 0) or one of these. */
+	private static final int INVALID = -1; // no alternative reachable.
+	private static final int UNRESOLVED = -2; // not calculated (yet).
+	private static final int ON_PATH = -3; // currently walked, for cycle detection.
+	private static final int ABSENT = -4; // voter (of a shared table) who did not vote here.
 
-	private final InvalidChoice INVALID_CHOICE = new InvalidChoice();
+	private static final int NONE = -1; // end of a delegator list.
 
-	public LiquidDemocracy() {
-		this.voters = new HashMap<>();
-		this.alternatives = new HashMap<>();
-		this.choices = new HashMap<>();
-	}
+	/* Calculate in parallel only with enough work to share. */
+	private static final int PARALLEL_THRESHOLD = 1 << 15;
 
-	/** A node is either an alternative or a voter in this liquid democracy tree. */
-	private abstract class Node {
-		protected Set<Voter> chosenBy;
+	private final NameTable voters; // all voters (name <-> id), maybe shared with other ballots (@see Ballots)
+	private final NameTable alternatives; // all alternatives (name <-> id)
+	private final boolean sharedVoters;
 
-		private Node() {
-			chosenBy = new HashSet<>();
-		}
+	private int voterCount; // ids below are in the arrays (with a shared table, some may be ABSENT)
+	private int absentVoters;
 
-		/** Add a new voter who picked or delegated their vote to this node. */
-		public void isChosenBy(Voter v) {
-			this.chosenBy.add(v);
-		}
+	private int[] targets; // voter id -> choice (delegated voter, encoded alternative or NO_CHOICE)
+	private int[] resolved; // voter id -> (indirectly) chosen alternative id or INVALID; calculating
+
+	/* Who delegates to whom: each voter is in the list of their delegate (if any),
+	 * a doubly linked list through the voters' ids, so a re-vote moves them out in O(1). */
+	private int[] firstDelegator; // voter id -> id of a voter who delegates to them, or NONE
+	private int[] nextDelegator, previousDelegator; // voter id -> neighbours in their delegate's list, or NONE
+
+	private int[] dirty; // voters who need to be calculated (again)
+	private int dirtyCount;
+
+	private int[] path; // the currently walked delegation chain (reused scratch).
+	private final BitSet walked = new BitSet(); // marks of the voters on the path (scratch, @see delegationPath)
+
+	private long[] votes; // alternative id -> count of calculated voters who (indirectly) chose it
+	private long invalidVotes; // count of calculated voters without valid choice
+
+	private ForkJoinPool pool; // if set, calculate many voters in parallel.
+	private int[] jumps; // scratch of the ParallelResolver, kept for the next calculation
+
+	private final BitSet onCycle; // voters who are part of a delegation cycle (not just delegating into one).
+
+	/* Voting power (@see getVotingPower): the delegations as forest, one delegation of each cycle is cut. */
+	private int[] inflow; // voter id -> voters delegating (indirectly) through them, themselves included
+	private final BitSet cut = new BitSet(); // voters whose delegation closes a cycle (not in the forest)
+	private boolean inflowStale = true; // counted again with the next request (as before the first)
+	private long inflowBudget; // steps left to keep the counts up to date on each vote
+
+	/* Counts for the metrics, kept always (cheap), published only with metrics (@see metrics). */
+	private int delegationCount; // voters who currently delegate
+	private int cycleCount, cycleParticipantCount; // of the calculated voters
+	private final BitSet cycleHeads = new BitSet(); // one voter of each cycle (where it was found)
+	private long calculatedVoters, reportedVoters; // calculated so far, of them already given to the metrics
+	private int[] chainDepth; // voter id -> length of their calculated chain (only with metrics)
+	private int maxChainDepth;
+	private Metrics metrics;
+
+	/* Copy-on-write pages of `resolved` for read views (@see view). */
+	private static final int PAGE_BITS = 12;
+	private final BitSet changedPages = new BitSet(); // pages with dirty voters since the last view
+	private View lastView;
+
+	public LiquidDemocracy() {
+		this(new NameTable(), false);
+	}
+
+	/** Constructor, a ballot on the voters of a table which other ballots share (@see Ballots),
+	 * or which other threads intern into (@see ConcurrentLiquidDemocracy).
+	 * Only the voters who voted on this ballot (or were delegated to) are its voters.
+	 * Its arrays are indexed by the shared ids, up to the highest id on it: the absent voters below take space too. */
+	LiquidDemocracy(NameTable voters) {
+		this(voters, true);
 	}
 
-	/** Voter is a node in the tree, they can pick and delegate. */
-	private class Voter extends Node {
+	private LiquidDemocracy(NameTable voters, boolean sharedVoters) {
+		this.voters = voters;
+		this.sharedVoters = sharedVoters;
+		this.alternatives = new NameTable();
+		this.targets = new int[16];
+		this.resolved = new int[16];
+		this.firstDelegator = new int[16];
+		this.nextDelegator = new int[16];
+		this.previousDelegator = new int[16];
+		this.dirty = new int[16];
+		this.path = new int[16];
+		this.votes = new long[16];
+		this.onCycle = new BitSet();
+		this.inflow = new int[16];
+	}
 
-		public final String name; // key value => equality.
-		private Node choice; // additional, redundant, but used double link (better backtracking, insuring no infinity loops)
+	/** Constructor, continue with the state of a snapshot (@see load).
+	 * The reverse edges are built again from the targets, without calculated choices
+	 * all voters are calculated with the next request. */
+	private LiquidDemocracy(SnapshotFile snapshot) {
+		int n = snapshot.voters.size();
+		int capacity = Math.max(16, n);
 
-		public Voter(String name, Node choice) {
-			this.name = name;
-			this.choice = choice;
-		}
+		this.voters = snapshot.voters;
+		this.alternatives = snapshot.alternatives;
+		this.sharedVoters = false;
+		this.voterCount = n;
+		this.targets = snapshot.targets.length >= capacity ? snapshot.targets : Arrays.copyOf(snapshot.targets, capacity);
+		this.path = new int[16];
+		this.inflow = new int[capacity];
 
-		@Override public String toString() {
-			return name;
+		/* Who delegates to whom (linked from the back, so the lists are in the voters' order). */
+		this.firstDelegator = new int[capacity];
+		this.nextDelegator = new int[capacity];
+		this.previousDelegator = new int[capacity];
+		Arrays.fill(firstDelegator, NONE);
+		for (int v = n - 1; v >= 0; v--) {
+			if (targets[v] >= 0) {
+				linkDelegator(targets[v], v);
+				delegationCount++;
+			}
 		}
 
-		@Override public boolean equals(Object that) {
-			return that != null && that instanceof Voter && this.name.equals(((Voter) that).name);
+		if (snapshot.hasChoices()) {
+			this.resolved = snapshot.resolved.length >= capacity ? snapshot.resolved : Arrays.copyOf(snapshot.resolved, capacity);
+			this.votes = snapshot.votes.length >= 16 ? snapshot.votes : Arrays.copyOf(snapshot.votes, 16);
+			this.invalidVotes = snapshot.invalidVotes;
+			this.onCycle = snapshot.onCycle;
+			this.dirty = new int[16];
+			countCycles();
+		} else {
+			this.resolved = new int[capacity];
+			Arrays.fill(resolved, UNRESOLVED);
+			this.votes = new long[Math.max(16, alternatives.size())];
+			this.onCycle = new BitSet();
+			this.dirty = new int[capacity];
+			for (int v = 0; v < n; v++) dirty[v] = v;
+			this.dirtyCount = n;
 		}
+	}
 
-		public Node getChoice() {
-			return this.choice;
-		}
+	/** Count the saved cycles (each walked once), as if they were found by calculating. */
+	private void countCycles() {
+		BitSet seen = new BitSet();
+		for (int v = onCycle.nextSetBit(0); v >= 0; v = onCycle.nextSetBit(v + 1)) {
+			if (seen.get(v)) continue;
 
-		public void setChoice(Node choice) {
-			// only the last choice counts.
-			this.choice = choice;
+			cycleHeads.set(v);
+			cycleCount++;
+			for (int c = v; !seen.get(c); c = targets[c]) {
+				seen.set(c);
+				cycleParticipantCount++;
+			}
 		}
 	}
 
-	/** Alternative is a node in a tree, they can only be picked. */
-	private class Alternative extends Node {
-		public final String name; // key value => equality.
+	/** Save the voters, alternatives and choices as binary snapshot (@see SnapshotFile).
+	 * @param withResults also save the calculated choices and counts (they are calculated first),
+	 *   so a loaded democracy has its results without calculating.
+	 * @throws IOException if the file can not be written.
+	 * @throws IllegalStateException if this is a ballot sharing its voters. */
+	public void save(Path file, boolean withResults) throws IOException {
+		if (sharedVoters) throw new IllegalStateException("A ballot with shared voters can not be saved alone.");
+		if (withResults) calculateIndirectChoices();
 
-		public Alternative(String name) {
-			this.name = name;
-		}
+		new SnapshotFile(voters, alternatives, targets,
+				withResults ? resolved : null, votes, invalidVotes, onCycle).write(file);
+	}
 
-		@Override public String toString() {
-			return isValid() ? name : "Invalid Choice";
-		}
+	/** Load a democracy from a binary snapshot (@see save), it can be continued as any other.
+	 * @throws IOException if the file can not be read or is no snapshot. */
+	public static LiquidDemocracy load(Path file) throws IOException {
+		return new LiquidDemocracy(SnapshotFile.read(file));
+	}
 
-		@Override public boolean equals(Object that) {
-			return that != null && that instanceof Alternative && this.name.equals(((Alternative) that).name);
-		}
+	/** Encode the alternative's id as a choice (negative, to distinguish from delegations).
+	 * This is its own inverse: decoding a picked choice is the same call. */
+	private static int pickOf(int alternative) {
+		return -2 - alternative;
+	}
 
-		/** Quicker view of if this is invalid. */
-		public boolean isValid() {
-			return name != null && !(this instanceof InvalidChoice);
-		}
+	/** Calculate the choices in parallel (on the common ForkJoinPool), if there are many to calculate.
+	 * The results are the same as calculated one after another. */
+	public void setParallel(boolean parallel) {
+		this.pool = parallel ? ForkJoinPool.commonPool() : null;
 	}
 
-	/** InvalidChoice to identify invalid choices. */
-	private class InvalidChoice extends Alternative {
-		public InvalidChoice() {
-			super(null);
-		}
+	/** Copy of the array with room for at least `min` entries (grows by half). */
+	private static int[] grow(int[] array, int min) {
+		return Arrays.copyOf(array, Math.max(min, array.length + (array.length >> 1) + 1));
 	}
 
 	/** Public Result for the Democracy.
@@ -138,149 +257,508 @@ public class LiquidDemocracy {
 	}
 
 	/** Get the voter with a given name.
-	 * If they not exists, create a new node.
+	 * If they not exists, create a new voter (without a choice).
 	 * @param name name of the requested voter.
-	 * @return voter of the map voters with the given name.
+	 * @return id of the voter with the given name.
 	 * @throws NullPointerException if the name is null.
 	 */
-	private Voter getVoter(String name) throws NullPointerException {
+	private int getVoter(String name) throws NullPointerException {
 		if (name == null) {
 			throw new NullPointerException("Voter name must not be null.");
 		}
-		if (!voters.containsKey(name)) {
-			Voter newVoter = new Voter(name, null);
-			voters.put(name, newVoter);
+
+		return register(voters.intern(name));
+	}
+
+	/** Make the interned voter a voter of this democracy (if they are not yet).
+	 * @return the voter's id. */
+	private int register(int id) {
+		if (id >= voterCount) {
+			/* New voter (with a shared table, others may have come before them). */
+			if (id >= targets.length) ensureVoterCapacity(id + (id >> 1) + 1);
+
+			changedPages.set(voterCount >>> PAGE_BITS); // the last page grows.
+			for (int v = voterCount; v < id; v++) addVoter(v, ABSENT);
+			absentVoters += id - voterCount;
+			addVoter(id, UNRESOLVED);
+			voterCount = id + 1;
+			markDirty(id);
+
+		} else if (resolved[id] == ABSENT) {
+			/* First vote of a known voter on this ballot. */
+			resolved[id] = UNRESOLVED;
+			absentVoters--;
+			markDirty(id);
+		}
+
+		return id;
+	}
+
+	private void addVoter(int id, int state) {
+		targets[id] = NO_CHOICE;
+		resolved[id] = state;
+		firstDelegator[id] = NONE;
+		inflow[id] = 1;
+	}
+
+	/** Id of a voter of this democracy, -1 if unknown (or absent from this ballot). */
+	private int findVoter(String name) {
+		int id = voters.find(name);
+		return id >= 0 && id < voterCount && resolved[id] != ABSENT ? id : -1;
+	}
+
+	/** Make room for (at least) the given number of voters.
+	 * Grown by half at least, so batch after batch of new voters is not copied again each time. */
+	private void ensureVoterCapacity(int capacity) {
+		voters.ensureCapacity(capacity);
+
+		if (capacity > targets.length) {
+			capacity = Math.max(capacity, targets.length + (targets.length >> 1) + 1);
+			targets = Arrays.copyOf(targets, capacity);
+			resolved = Arrays.copyOf(resolved, capacity);
+			firstDelegator = Arrays.copyOf(firstDelegator, capacity);
+			nextDelegator = Arrays.copyOf(nextDelegator, capacity);
+			previousDelegator = Arrays.copyOf(previousDelegator, capacity);
+			inflow = Arrays.copyOf(inflow, capacity);
+			if (chainDepth != null) chainDepth = Arrays.copyOf(chainDepth, capacity);
 		}
-		return voters.get(name);
 	}
 
 	/** Get the alternative with the given name.
 	 * @param name name of the requested alternative.
-	 * @return alternative of the map alternatives with the given name.
+	 * @return id of the alternative with the given name.
 	 * @throws NullPointerException if the name is null.
 	 */
-	private Alternative getAlternative(String name) throws NullPointerException {
+	private int getAlternative(String name) throws NullPointerException {
 		if (name == null) {
 			throw new NullPointerException("Alternative name must not be null.");
 		}
-		if (!alternatives.containsKey(name)) {
-			Alternative newAlternative = new Alternative(name);
-			alternatives.put(name, newAlternative);
-		}
-		return alternatives.get(name);
+
+		int id = alternatives.intern(name);
+		if (id == votes.length) votes = Arrays.copyOf(votes, id + (id >> 1) + 1);
+
+		return id;
+	}
+
+	/** Ids of this democracy's voters are below this (with a shared table, some may be absent). */
+	int voterIds() {
+		return voterCount;
+	}
+
+	/** The voter's own choice (encoded as in `targets`), NO_CHOICE if none, unknown or absent. */
+	int choiceOf(int voter) {
+		return voter < voterCount ? targets[voter] : NO_CHOICE;
+	}
+
+	/** The picked alternative's id of an encoded choice, -1 if it is no pick. */
+	static int alternativeOf(int choice) {
+		return choice < NO_CHOICE ? pickOf(choice) : -1;
+	}
+
+	int alternativeCount() {
+		return alternatives.size();
+	}
+
+	String alternativeName(int alternative) {
+		return alternatives.name(alternative);
 	}
 
 	/** Return the name of all voters.
 	 * Wrap it so it will not influence the results. */
 	public Set<String> getVoters() {
-		return new HashSet<String>(voters.keySet());
+		int n = voterCount - absentVoters;
+		Set<String> names = new HashSet<>(Math.max(16, (int) (n / .75f) + 1));
+		for (int v = 0; v < voterCount; v++) {
+			if (resolved[v] != ABSENT) names.add(voters.name(v));
+		}
+		return names;
 	}
 
 	/** Return the name of all alternatives.
 	 * Wrap it so it will not influence the results. */
 	public Set<String> getAlternatives() {
-		return new HashSet<String>(alternatives.keySet());
+		int n = alternatives.size();
+		Set<String> names = new HashSet<>(Math.max(16, (int) (n / .75f) + 1));
+		for (int a = 0; a < n; a++) names.add(alternatives.name(a));
+		return names;
 	}
 
 	/** Get all latest indirect choices.
-	 * This will create an internal state, where the `Voter to Alternative` is mapped.
+	 * This will create an internal state, where the `Voter to Alternative` is mapped (`resolved`).
 	 * This state will not be returned to the public as it is,
 	 * but will be the base of two distinct public returning
 	 * methods: @see getResultingChoices and @see getResults,
 	 * which either print each corresponding name, or sums up the typed alternatives accordingly.
 	 *
-	 * @return set of voter's name mapped to their (indirectly) chosen alternative's name.
+	 * @return voter's id mapped to their (indirectly) chosen alternative's id or INVALID.
 	 * */
-	private Map<Voter, Alternative> calculateIndirectChoices() {
-		if (!calculated) {
-			choices.clear(); // reset.
-
-			Set<Voter> also = new HashSet<>();
-			Set<Voter> done = new HashSet<>();
-
-			/* PREVIOUSLY I had a recursive attempt with something as following:
-			 *
-			 *  -- that may not terminate if called from a cycling participant
-			 *  fun Node.getAllChosenBy() = chosenBy.flatMap { n -> getAllChosenBy() }
-			 *
-			 * -- then function call
-			 * for (a in Agents) {
-			 *    allChosenBy = a.getAllChosenBy()
-			 *    choices += completeChosenBy.associateWith(a)
-			 * }
-			 *
-			 * Though this recursive Node method needed the programmer / caller to not call it
-			 * with possible cycling voters but always start with agents to terminate.
-			 * Or had a more difficult way to implement the avoidance of cycling (with accumulators or so on).
-			 *
-			 * The invalid voters would also by just defined by being the leftover voters.
-			 */
-
-			/* HERE, this algorithm will "climb up" the choice branch to look what the voter chose.
-			 * It will also push their choice to the ones who delegated to this voter.
-			 */
-			for (Voter v : voters.values()) {
-				also.clear();
-				also.add(v);
-
-				if (done.contains(v)) continue; // already put.
-
-				Node choice = v.getChoice();
-
-				while (choice != null) {
-
-					/* Nothing chosen or the rooting alternative. */
-					if (choice == null || choice instanceof Alternative) break;
-
-					/* Here all non-null voters. */
-
-					/* Cycle => reset Alternative to null (no final Alternative is chosen).
-					 * The choice / the delegated voter of the voter has chosen someone who is already
-					 * in this delegation hierarchy / relation. */
-					if (also.contains(choice)) {
-						choice = null;
-						break;
-					}
-
-					/* "Also", also what my delegation chose will be my choice.
-					 * Discover cycles, if an also is chosen again. */
-					also.add((Voter) choice);
-
-					/* "Also" who chose this voter will have the same choice.
-					 * To discover cycles earlier and also make a shortcut if possible */
-					also.addAll(v.chosenBy);
-
-					// check if the delegated voter already has a calculated choice and maybe use this.
-					choice = choices.containsKey((Voter) choice)
-						? choices.get((Voter) choice) // do not recalculate the already calculated.
-						: ((Voter) choice).getChoice() // get the delegated choice.
-						;
-				}
+	private int[] calculateIndirectChoices() {
+		/* HERE, this algorithm will "climb up" the choice branch to look what the voter chose.
+		 * Every voter on the way gets the same choice, so each voter is walked only once,
+		 * later walks stop at the first already calculated voter.
+		 * => O(voters + delegations), no matter how long the chains or how big the fan-in.
+		 *
+		 * Only the voters invalidated since the last calculation are walked (@see invalidate).
+		 */
+		boolean measured = metrics != null && dirtyCount > 0;
+		long start = measured ? System.nanoTime() : 0;
+
+		if (pool != null && dirtyCount >= PARALLEL_THRESHOLD) {
+			calculateInParallel();
+		} else {
+			for (int i = 0; i < dirtyCount; i++) {
+				if (resolved[dirty[i]] == UNRESOLVED) resolveChain(dirty[i]);
+			}
+		}
+		dirtyCount = 0;
+
+		if (measured) measured(start);
+
+		return resolved;
+	}
+
+	/** Calculate all invalidated voters with the ParallelResolver (pointer jumping).
+	 * The few voters who end up in (or in front of) a cycle are walked again,
+	 * one after another, to find the cycle participants. */
+	private void calculateInParallel() {
+		/* Each unresolved voter only once (the queue may list them more often). */
+		int count = 0;
+		for (int i = 0; i < dirtyCount; i++) {
+			int v = dirty[i];
+			if (resolved[v] == UNRESOLVED) {
+				resolved[v] = ON_PATH;
+				dirty[count++] = v;
+			}
+		}
+
+		if (jumps == null || jumps.length < voterCount) jumps = new int[targets.length];
+
+		ParallelResolver resolver = new ParallelResolver(pool, dirty, count, jumps);
+		resolver.jump(targets, resolved);
+		resolver.assign(resolved, alternatives.size());
 
-				/* Invalid or alternative.. */
-				for (Voter a : also) choices.put(a, choice != null ? (Alternative) choice : INVALID_CHOICE);
+		long[] calculated = resolver.votes();
+		for (int a = 0; a < calculated.length; a++) votes[a] += calculated[a];
+		invalidVotes += resolver.invalidVotes();
 
-				done.addAll(also); // all done.
+		/* Find the cycles among the invalid ones. */
+		int[] cycling = resolver.cycling();
+		int cyclingCount = resolver.cyclingCount();
+		calculatedVoters += count - cyclingCount; // these are walked (and counted) again.
+
+		for (int i = 0; i < cyclingCount; i++) unresolve(cycling[i]);
+		for (int i = 0; i < cyclingCount; i++) {
+			if (resolved[cycling[i]] == UNRESOLVED) resolveChain(cycling[i]);
+		}
+	}
+
+	/** Walk the delegation chain of the given (unresolved) voter,
+	 * until a calculated voter, an alternative or a cycle is reached,
+	 * and put the found choice for the whole walked chain. */
+	private void resolveChain(int v) {
+		if (path.length < voterCount) path = grow(path, voterCount);
+
+		int length = 0;
+		int choice;
+		int current = v;
+		int depth = 0; // of the chain's rest, not walked.
+
+		while (true) {
+			/* Already calculated: use it, do not recalculate. */
+			if (resolved[current] >= INVALID) {
+				choice = resolved[current];
+				if (chainDepth != null) depth = chainDepth[current];
+				break;
+			}
+
+			/* Cycle: The delegated voter is already in this delegation chain.
+			 * The chain from them up to here is the cycle, voters before just delegate into it. */
+			if (resolved[current] == ON_PATH) {
+				int i = length - 1;
+				while (path[i] != current) onCycle.set(path[i--]);
+				onCycle.set(current);
+
+				cycleHeads.set(current);
+				cycleCount++;
+				cycleParticipantCount += length - i;
+
+				choice = INVALID;
+				break;
 			}
 
-			calculated = true;
+			resolved[current] = ON_PATH;
+			path[length++] = current;
+
+			int target = targets[current];
+
+			/* Nothing chosen or the rooting alternative. */
+			if (target == NO_CHOICE) {
+				choice = INVALID;
+				break;
+			}
+			if (target < NO_CHOICE) {
+				choice = pickOf(target);
+				break;
+			}
+
+			current = target; // follow the delegation.
 		}
 
-		return choices;
+		/* Invalid or alternative for the whole chain. */
+		for (int i = 0; i < length; i++) resolved[path[i]] = choice;
+		calculatedVoters += length;
+
+		if (chainDepth != null) {
+			for (int i = 0; i < length; i++) chainDepth[path[i]] = depth + length - i;
+			maxChainDepth = Math.max(maxChainDepth, depth + length);
+		}
+
+		/* Keep the tally up to date. */
+		if (choice == INVALID) invalidVotes += length;
+		else votes[choice] += length;
+	}
+
+	/** Take back the calculated choice of a voter (also from the tally). */
+	private void unresolve(int v) {
+		int choice = resolved[v];
+
+		if (choice == INVALID) invalidVotes--;
+		else votes[choice]--;
+
+		resolved[v] = UNRESOLVED;
+	}
+
+	/** Remember the voter to be calculated with the next request. */
+	private void markDirty(int v) {
+		changedPages.set(v >>> PAGE_BITS);
+		if (dirtyCount == dirty.length) dirty = grow(dirty, dirtyCount + 1);
+		dirty[dirtyCount++] = v;
+	}
+
+	/** Forget the calculated choice of the voter and of all who (indirectly) delegated to them.
+	 * Invariant: If a voter is unresolved, so is everyone delegating to them.
+	 * Therefore an already unresolved voter stops the walk, and all work here
+	 * is paid back by the calculation which needed to be done anyway. */
+	private void invalidate(int v) {
+		if (resolved[v] == UNRESOLVED) return; // with all their delegators.
+
+		int[] stack = path; // scratch, not used while not calculating.
+		int size = 0;
+
+		unresolve(v);
+		stack[size++] = v;
+
+		while (size > 0) {
+			int current = stack[--size];
+
+			if (onCycle.get(current)) {
+				onCycle.clear(current);
+				cycleParticipantCount--;
+				if (cycleHeads.get(current)) {
+					cycleHeads.clear(current);
+					cycleCount--;
+				}
+			}
+			markDirty(current);
+
+			for (int d = firstDelegator[current]; d != NONE; d = nextDelegator[d]) {
+				if (resolved[d] != UNRESOLVED) {
+					unresolve(d);
+					if (size == stack.length) path = stack = grow(stack, size + 1);
+					stack[size++] = d;
+				}
+			}
+		}
+	}
+
+	/** Add a voter who delegates their vote to this voter (at the front of their list). */
+	private void linkDelegator(int v, int delegator) {
+		int first = firstDelegator[v];
+
+		nextDelegator[delegator] = first;
+		previousDelegator[delegator] = NONE;
+		if (first != NONE) previousDelegator[first] = delegator;
+		firstDelegator[v] = delegator;
+	}
+
+	/** Remove a voter who no longer delegates to this voter. */
+	private void unlinkDelegator(int v, int delegator) {
+		int previous = previousDelegator[delegator];
+		int next = nextDelegator[delegator];
+
+		if (previous != NONE) nextDelegator[previous] = next;
+		else firstDelegator[v] = next;
+		if (next != NONE) previousDelegator[next] = previous;
+	}
+
+	/** Return the names of all voters who are part of a delegation cycle.
+	 * Voters who only delegate into a cycle (and are invalid as well) are not part of it.
+	 * This is recorded while calculating the choices, there is no extra pass over the graph. */
+	public Set<String> getCycleParticipants() {
+		calculateIndirectChoices();
+
+		Set<String> names = new HashSet<>();
+		for (int v = onCycle.nextSetBit(0); v >= 0; v = onCycle.nextSetBit(v + 1)) {
+			names.add(voters.name(v));
+		}
+		return names;
 	}
 
 	/** Return for each voter their indirectly voted choice. */
 	public Map<String, String> getResultingChoices() {
-		if (!calculated) calculateIndirectChoices();
+		calculateIndirectChoices();
 
-		Map<String, String> voterToAlternative = new HashMap<>();
+		int n = voterCount - absentVoters;
+		Map<String, String> voterToAlternative = new HashMap<>(Math.max(16, (int) (n / .75f) + 1));
 
 		/* Map to <Voter.name, Alternative.name>. */
-		choices.forEach((v,k) -> voterToAlternative.put(v.name, k != null ? k.name : null));
+		for (int v = 0; v < voterCount; v++) {
+			int a = resolved[v];
+			if (a != ABSENT) voterToAlternative.put(voters.name(v), a != INVALID ? alternatives.name(a) : null);
+		}
 
 		return voterToAlternative;
 	}
 
+	/** Hand each voter with their indirectly voted choice (null: invalid) to the consumer,
+	 * in the order the voters were first seen. As getResultingChoices, without building a map. */
+	public void forEachResultingChoice(BiConsumer<String, String> consumer) {
+		calculateIndirectChoices();
+
+		for (int v = 0; v < voterCount; v++) {
+			int a = resolved[v];
+			if (a != ABSENT) consumer.accept(voters.name(v), a != INVALID ? alternatives.name(a) : null);
+		}
+	}
+
+	/** The (indirectly) voted alternative of one voter, only their delegation chain is calculated.
+	 * The calculated chain is kept (as with all calculations, until a vote on it changes),
+	 * so asking again, or for someone delegating into it, stops at the first calculated voter.
+	 * @return name of the alternative, null if the voter is invalid or unknown. */
+	public String resolve(String voter) {
+		int v = findVoter(voter);
+		if (v < 0) return null;
+
+		if (resolved[v] == UNRESOLVED) {
+			long start = metrics != null ? System.nanoTime() : 0;
+			resolveChain(v);
+			if (metrics != null) measured(start);
+		}
+
+		int a = resolved[v];
+		return a >= 0 ? alternatives.name(a) : null;
+	}
+
+	/** The delegation chain of one voter: the voter, whom they delegated to, and so on,
+	 * up to the voter who picked (or chose nothing). If it runs into a cycle,
+	 * the first voter seen again is added once more at the end.
+	 * @return the voters' names in delegation order, empty if the voter is unknown. */
+	public List<String> delegationPath(String voter) {
+		List<String> names = new ArrayList<>();
+		int v = findVoter(voter);
+		if (v < 0) return names;
+
+		/* Walked voters are marked (and unmarked after), to stop at the first one seen again. */
+		if (path.length < voterCount) path = grow(path, voterCount);
+		int length = 0;
+
+		while (true) {
+			names.add(voters.name(v));
+			if (walked.get(v) || targets[v] < 0) break; // cycle, or picked / nothing chosen.
+			walked.set(v);
+			path[length++] = v;
+			v = targets[v];
+		}
+
+		for (int i = 0; i < length; i++) walked.clear(path[i]);
+		return names;
+	}
+
+	/** A cursor over the voters and their (indirectly) voted choices, in the order the voters were first seen.
+	 * It reads the calculated choices in place, nothing is copied.
+	 * Votes in between are calculated with the next step, the following voters show their latest choice
+	 * (new voters come at the end), so paging on with the position never skips or repeats a voter.
+	 */
+	public final class ChoiceCursor {
+		private final boolean invalidOnly;
+		private int next; // id of the next voter to look at
+		private int current = -1;
+
+		private ChoiceCursor(int position, boolean invalidOnly) {
+			this.next = Math.max(0, position);
+			this.invalidOnly = invalidOnly;
+		}
+
+		/** Move to the next voter (with an invalid choice, if only those).
+		 * @return false if there are no more voters. */
+		public boolean next() {
+			if (dirtyCount > 0) calculateIndirectChoices();
+
+			while (next < voterCount) {
+				int v = next++;
+				if (invalidOnly ? resolved[v] == INVALID : resolved[v] != ABSENT) {
+					current = v;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/** Name of the current voter. */
+		public String voter() {
+			return voters.name(current);
+		}
+
+		/** Name of the current voter's alternative, null if invalid. */
+		public String choice() {
+			int a = resolved[current];
+			return a >= 0 ? alternatives.name(a) : null;
+		}
+
+		/** Resume token: a cursor (@see choices) at this position goes on after the current voter. */
+		public int position() {
+			return next;
+		}
+	}
+
+	/** A cursor over all voters and their choices (@see ChoiceCursor).
+	 * @param invalidOnly only the voters without valid choice. */
+	public ChoiceCursor choices(boolean invalidOnly) {
+		return new ChoiceCursor(0, invalidOnly);
+	}
+
+	/** A cursor which resumes at the given position (@see ChoiceCursor.position). */
+	public ChoiceCursor choices(int position, boolean invalidOnly) {
+		return new ChoiceCursor(position, invalidOnly);
+	}
+
+	/** One page of voters and their choices (@see getChoicesPage). */
+	public static class Page {
+		public final Map<String, String> choices; // voter -> alternative (null: invalid), in the voters' order
+		public final int next; // position to resume at, -1 after the last voter
+
+		public Page(Map<String, String> choices, int next) {
+			this.choices = choices;
+			this.next = next;
+		}
+	}
+
+	/** The next at most `limit` voters with their choices, starting at a position (0 or a page's `next`).
+	 * @param invalidOnly only the voters without valid choice. */
+	public Page getChoicesPage(int position, int limit, boolean invalidOnly) {
+		ChoiceCursor cursor = new ChoiceCursor(position, invalidOnly);
+		Map<String, String> choices = new LinkedHashMap<>();
+
+		while (choices.size() < limit && cursor.next()) choices.put(cursor.voter(), cursor.choice());
+
+		/* Done, if no voter (of the filter) is left. */
+		int next = cursor.position();
+		boolean more = false;
+		for (int v = next; v < voterCount && !more; v++) more = invalidOnly ? resolved[v] == INVALID : resolved[v] != ABSENT;
+
+		return new Page(choices, more ? next : -1);
+	}
+
 	/** Count latest votes for each alternative.
 	 * @return set of alternative names mapped to their counts.
 	 */
@@ -288,26 +766,283 @@ public class LiquidDemocracy {
 		/* Fetch latest results. */
 		calculateIndirectChoices(); // update
 
-		/* Count for each alternative (or invalid choice) their received votes.
-		 * grouping by choice, counting the group members. */
-		Map<Alternative, Long> alternativeResults
-			= choices
-			.entrySet().stream()
-			.collect(Collectors.groupingBy( e ->
-						e.getValue(), // key: alternative
-						Collectors.counting()) // value: group member size
-					);
+		/* The votes are already counted, while calculating.
+		 * Only alternatives with votes, map valid alternative's name (now key: String). */
+		Map<String, Long> results = new HashMap<>();
+		for (int a = 0, n = alternatives.size(); a < n; a++) {
+			if (votes[a] > 0) results.put(alternatives.name(a), votes[a]);
+		}
+
+		return new Result(results, invalidVotes);
+	}
+
+	/** A consistent read only view of the results, as they were when it was taken (@see view).
+	 * It does not change with later votes, and can be read by any thread while the democracy goes on. */
+	public static final class View {
+		final int[][] pages; // voter id -> chosen alternative id, INVALID or ABSENT, in pages (shared between views)
+		private final int voterIds, voterCount, alternativeCount; // voterIds: with the absent voters of a ballot
+		private final String[] voterNames, alternativeNames; // append only arrays of the name tables
+		private final long[] votes;
+		private final long invalidVotes;
 
-		/* Map alternatives to string. Split valid and invalid choices. */
-		long invalidVoteCount = alternativeResults.getOrDefault(INVALID_CHOICE, 0l);
+		private View(int[][] pages, int voterIds, int voterCount, String[] voterNames,
+				int alternativeCount, String[] alternativeNames, long[] votes, long invalidVotes) {
+			this.pages = pages;
+			this.voterIds = voterIds;
+			this.voterCount = voterCount;
+			this.voterNames = voterNames;
+			this.alternativeCount = alternativeCount;
+			this.alternativeNames = alternativeNames;
+			this.votes = votes;
+			this.invalidVotes = invalidVotes;
+		}
+
+		/** @see LiquidDemocracy.getResults */
+		public Result getResults() {
+			Map<String, Long> results = new HashMap<>();
+			for (int a = 0; a < alternativeCount; a++) {
+				if (votes[a] > 0) results.put(alternativeNames[a], votes[a]);
+			}
+			return new Result(results, invalidVotes);
+		}
 
-		/* Filter valid choices, map valid alternative's name (now key: String). */
-		Map<String, Long> results
-			= alternativeResults.entrySet().stream()
-			.filter(e -> e.getKey().isValid())
-			.collect(Collectors.toMap(e -> e.getKey().toString(), Map.Entry::getValue));
+		/** @see LiquidDemocracy.getResultingChoices */
+		public Map<String, String> getResultingChoices() {
+			Map<String, String> voterToAlternative = new HashMap<>(Math.max(16, (int) (voterCount / .75f) + 1));
+			for (int v = 0; v < voterIds; v++) {
+				int a = pages[v >>> PAGE_BITS][v & ((1 << PAGE_BITS) - 1)];
+				if (a != ABSENT) voterToAlternative.put(voterNames[v], a != INVALID ? alternativeNames[a] : null);
+			}
+			return voterToAlternative;
+		}
 
-		return new Result(results, invalidVoteCount);
+		/** Number of voters at the time of the view. */
+		public int voterCount() {
+			return voterCount;
+		}
+	}
+
+	/** Take a read only view of the current results (@see View).
+	 * The calculated choices are copied page by page, only the pages with voters who changed
+	 * since the last view, the other pages are shared with it. So a view costs about what changed
+	 * (and a copy of the counts per alternative), not the whole electorate. */
+	public View view() {
+		calculateIndirectChoices();
+
+		int n = voterCount;
+		int pageSize = 1 << PAGE_BITS;
+		int pageCount = (n + pageSize - 1) >>> PAGE_BITS;
+
+		int[][] pages = lastView != null ? Arrays.copyOf(lastView.pages, pageCount) : new int[pageCount][];
+		for (int p = 0; p < pageCount; p++) {
+			if (pages[p] == null || changedPages.get(p)) {
+				pages[p] = Arrays.copyOfRange(resolved, p << PAGE_BITS, Math.min(n, (p + 1) << PAGE_BITS));
+			}
+		}
+		changedPages.clear();
+
+		int alternativeCount = alternatives.size();
+		lastView = new View(pages, n, n - absentVoters, voters.names(), alternativeCount, alternatives.names(),
+				Arrays.copyOf(votes, alternativeCount), invalidVotes);
+		return lastView;
+	}
+
+	/** The k alternatives with the most votes (and the invalid count), without sorting all of them.
+	 * A bounded min-heap over the counts keeps the best k seen so far: O(alternatives * log k).
+	 * Equal counts are ordered by the alternative's first appearance.
+	 * @return the leading alternatives in descending order (iteration order of the choices). */
+	public Result getTopResults(int k) {
+		calculateIndirectChoices();
+
+		Map<String, Long> results = new LinkedHashMap<>();
+		for (int a : top(k, alternatives.size(), a -> votes[a])) results.put(alternatives.name(a), votes[a]);
+
+		return new Result(results, invalidVotes);
+	}
+
+	/** The ids (0 to n) with the k largest counts, in descending order, ids without count (0) are left out.
+	 * A bounded min-heap over the counts keeps the best k seen so far: O(n * log k).
+	 * Equal counts are ordered by the smaller id (first appearance). */
+	private static int[] top(int k, int n, IntToLongFunction count) {
+		int[] heap = new int[Math.max(0, Math.min(k, n))]; // ids, the worst at the root
+		int size = 0;
+
+		for (int id = 0; id < n && heap.length > 0; id++) {
+			if (count.applyAsLong(id) == 0) continue;
+
+			if (size < heap.length) {
+				/* Sift up. */
+				int i = size++;
+				while (i > 0 && ranksBelow(count, id, heap[(i - 1) >> 1])) {
+					heap[i] = heap[(i - 1) >> 1];
+					i = (i - 1) >> 1;
+				}
+				heap[i] = id;
+			} else if (ranksBelow(count, heap[0], id)) {
+				siftDown(count, heap, size, id);
+			}
+		}
+
+		/* Take the worst first, fill from the back. */
+		int[] top = new int[size];
+		for (int i = size - 1; i >= 0; i--) {
+			top[i] = heap[0];
+			siftDown(count, heap, i, heap[i]);
+		}
+		return top;
+	}
+
+	/** Has a a smaller count than b (or the same, but appeared later)? */
+	private static boolean ranksBelow(IntToLongFunction count, int a, int b) {
+		long countA = count.applyAsLong(a), countB = count.applyAsLong(b);
+		return countA < countB || (countA == countB && a > b);
+	}
+
+	/** Put the id at the heap's root and sift it down (heap of the given size). */
+	private static void siftDown(IntToLongFunction count, int[] heap, int size, int id) {
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) break;
+			if (child + 1 < size && ranksBelow(count, heap[child + 1], heap[child])) child++;
+			if (!ranksBelow(count, heap[child], id)) break;
+
+			heap[i] = heap[child];
+			i = child;
+		}
+		if (size > 0) heap[i] = id;
+	}
+
+	/** The voting power of a voter: how many voters' votes go through them
+	 * (themselves and everyone who delegated to them, directly or indirectly).
+	 * Votes which end invalid (nothing picked, in or into a cycle) have no power, so it is 0 for those voters.
+	 *
+	 * The counts are kept per voter while voting (@see moveInflow), here only the voter's
+	 * own chain is calculated (@see resolve), no delegator is walked.
+	 * @return the voting power, 0 if the voter is unknown. */
+	public long getVotingPower(String voter) {
+		int v = findVoter(voter);
+		if (v < 0) return 0;
+
+		if (inflowStale) countInflow();
+		if (resolved[v] == UNRESOLVED) resolveChain(v);
+
+		return resolved[v] >= 0 ? inflow[v] : 0;
+	}
+
+	/** The k voters with the most voting power (@see getVotingPower), who got at least one delegation.
+	 * @return the delegates' names mapped to their voting power, in descending order. */
+	public Map<String, Long> getTopDelegates(int k) {
+		if (inflowStale) countInflow();
+		calculateIndirectChoices();
+
+		IntToLongFunction power = v -> resolved[v] >= 0 && inflow[v] > 1 ? inflow[v] : 0;
+
+		Map<String, Long> delegates = new LinkedHashMap<>();
+		for (int v : top(k, voterCount, power)) delegates.put(voters.name(v), power.applyAsLong(v));
+
+		return delegates;
+	}
+
+	/** Count the inflow of all voters from scratch: O(voters).
+	 * Leaves first (no delegators), each adds their count to their delegate's.
+	 * Who is left over is on a cycle: its first voter's delegation is cut, the others are counted along it. */
+	private void countInflow() {
+		int n = voterCount;
+		int[] pending = new int[n]; // voter id -> delegators not yet counted into them
+		int[] queue = new int[n];
+		int head = 0, tail = 0;
+
+		for (int v = 0; v < n; v++) {
+			inflow[v] = 1;
+			if (targets[v] >= 0) pending[targets[v]]++;
+		}
+		for (int v = 0; v < n; v++) {
+			if (pending[v] == 0) queue[tail++] = v;
+		}
+		while (head < tail) {
+			int v = queue[head++];
+			int t = targets[v];
+			if (t >= 0) {
+				inflow[t] += inflow[v];
+				if (--pending[t] == 0) queue[tail++] = t;
+			}
+		}
+
+		cut.clear();
+		for (int v = 0; v < n; v++) {
+			if (pending[v] == 0) continue; // counted, or a cycle already done.
+
+			/* v -> c1 -> ... -> v: cut v's delegation, count c1 into c2 and so on, the last into v. */
+			cut.set(v);
+			pending[v] = 0;
+			for (int c = targets[v]; c != v; c = targets[c]) {
+				inflow[targets[c]] += inflow[c];
+				pending[c] = 0;
+			}
+		}
+
+		inflowStale = false;
+		inflowBudget = 2L * n + 1024;
+	}
+
+	/** Move the voter (with their inflow) from their old delegate to the new choice.
+	 * Only the delegation chains of the old and the new delegate are walked (up to their picking voter).
+	 * A delegation which closes a cycle is cut instead, and a cut delegation is restored once its cycle is broken.
+	 *
+	 * Chains can be long, so the steps are counted: if they outweigh counting all voters again,
+	 * the counts are left stale and counted at once with the next request (as for bulk votes). */
+	private void moveInflow(int voter, int choice) {
+		int old = targets[voter];
+
+		if (cut.get(voter)) {
+			cut.clear(voter); // their own delegation closed the cycle, now it is gone.
+		} else if (old >= 0) {
+			targets[voter] = NO_CHOICE; // detached, a root now.
+			int root = addAlong(old, -inflow[voter]);
+
+			/* The voter was in a cycle's tree: is the cycle still closed without them? */
+			if (root >= 0 && cut.get(root) && findRoot(targets[root]) != root) {
+				cut.clear(root);
+				addAlong(targets[root], inflow[root]);
+			}
+		}
+
+		/* Still detached while looking for the root, the caller sets the new choice.
+		 * Their inflow may have grown, if their old cycle was restored behind them. */
+		targets[voter] = NO_CHOICE;
+		if (choice >= 0 && !inflowStale) {
+			if (findRoot(choice) == voter) cut.set(voter); // delegates to one of their delegators (or self).
+			else addAlong(choice, inflow[voter]);
+		}
+	}
+
+	/** Add to the inflow of v and everyone up their chain (without cut delegations).
+	 * @return the last voter of the chain, -1 if the budget is used up (the counts are stale then). */
+	private int addAlong(int v, int count) {
+		while (true) {
+			if (--inflowBudget < 0) {
+				inflowStale = true;
+				return -1;
+			}
+			inflow[v] += count;
+			int t = targets[v];
+			if (t < 0 || cut.get(v)) return v;
+			v = t;
+		}
+	}
+
+	/** The last voter of v's chain (without cut delegations), -1 if the budget is used up. */
+	private int findRoot(int v) {
+		while (true) {
+			if (--inflowBudget < 0) {
+				inflowStale = true;
+				return -1;
+			}
+			int t = targets[v];
+			if (t < 0 || cut.get(v)) return v;
+			v = t;
+		}
 	}
 
 	/** Add a new delegation.
@@ -316,24 +1051,25 @@ public class LiquidDemocracy {
 	 * @throws NullPointerException if any name is null.
 	 */
 	public void delegate(String v0, String v1) throws NullPointerException {
-		Voter voter0, voter1;
+		int voter0, voter1;
 
 		if (v0 == null) {
 			/* Unacceptable command. */
 			throw new NullPointerException("Voters must not be null");
 		}
 
-		voter0 = getVoter(v0); // node of voters
+		voter0 = getVoter(v0); // id of voters
 
 		if (v1 != null) {
-			voter1 = getVoter(v1); // node of voters
-			voter1.isChosenBy(voter0); // add new chosen by.
-			voter0.setChoice(voter1); // also (re) set v0's choice.
-			calculated = false;
+			voter1 = getVoter(v1); // id of voters
+
+			choose(voter0, voter1); // also (re) set v0's choice.
 		} else {
 			// just invalid voting
 			// System.err.println("Voter (" + v0 + ") made an invalid choice.");
 		}
+
+		if (metrics != null) accepted(1);
 	}
 
 	/** Add a new pick.
@@ -347,18 +1083,194 @@ public class LiquidDemocracy {
 			throw new NullPointerException("Voters must not be null");
 		}
 
-		Voter voter = getVoter(v0);
+		int voter = getVoter(v0);
 
 		if (a0 != null) {
 			/* The registered alternative is chosen by the registered voter. */
-			Alternative alternative = this.getAlternative(a0);
+			int alternative = this.getAlternative(a0);
 
-			alternative.isChosenBy(voter);
-			voter.setChoice(alternative); // also (re)set v0's choice.
-			calculated = false;
+			choose(voter, pickOf(alternative)); // also (re)set v0's choice.
 		} else {
 			// just invalid voting
 			// System.err.println("Voter (" + v0 + ") made an invalid choice.");
 		}
+
+		if (metrics != null) accepted(1);
+	}
+
+	/** Set the voter's choice (delegated voter or encoded alternative), only the last choice counts. */
+	private void choose(int voter, int choice) {
+		if (targets[voter] != choice) {
+			if (targets[voter] >= 0) {
+				unlinkDelegator(targets[voter], voter); // not chosen by them anymore.
+				delegationCount--;
+			}
+			if (choice >= 0) {
+				linkDelegator(choice, voter);
+				delegationCount++;
+			}
+			if (!inflowStale) moveInflow(voter, choice);
+			targets[voter] = choice;
+			invalidate(voter);
+		}
+	}
+
+	/** A batch of picks and delegations, to be applied at once (@see applyBatch).
+	 * The commands are kept in their order, only the last choice of a voter counts.
+	 * It can be cleared and filled again. */
+	public static class Batch {
+		private static final byte PICK = 0, DELEGATE = 1;
+
+		private byte[] kinds;
+		private String[] voters, targets; // target: alternative or second voter, null is an invalid choice
+		private int size;
+
+		public Batch() {
+			this(64);
+		}
+
+		public Batch(int capacity) {
+			capacity = Math.max(1, capacity);
+			this.kinds = new byte[capacity];
+			this.voters = new String[capacity];
+			this.targets = new String[capacity];
+		}
+
+		private Batch add(byte kind, String voter, String target) {
+			if (voter == null) {
+				/* Unacceptable command, as with pick() and delegate(). */
+				throw new NullPointerException("Voters must not be null");
+			}
+			if (size == kinds.length) {
+				int capacity = size + (size >> 1) + 1;
+				kinds = Arrays.copyOf(kinds, capacity);
+				voters = Arrays.copyOf(voters, capacity);
+				targets = Arrays.copyOf(targets, capacity);
+			}
+			kinds[size] = kind;
+			voters[size] = voter;
+			targets[size] = target;
+			size++;
+			return this;
+		}
+
+		/** Add a pick, @see LiquidDemocracy.pick. */
+		public Batch pick(String voter, String alternative) {
+			return add(PICK, voter, alternative);
+		}
+
+		/** Add a delegation, @see LiquidDemocracy.delegate. */
+		public Batch delegate(String voter, String secondVoter) {
+			return add(DELEGATE, voter, secondVoter);
+		}
+
+		/** Number of commands in this batch. */
+		public int size() {
+			return size;
+		}
+
+		/** Voter of the i-th command. */
+		String voter(int i) {
+			return voters[i];
+		}
+
+		/** Alternative or second voter of the i-th command (null: invalid choice). */
+		String target(int i) {
+			return targets[i];
+		}
+
+		/** Is the i-th command a delegation (otherwise a pick)? */
+		boolean isDelegation(int i) {
+			return kinds[i] == DELEGATE;
+		}
+
+		/** Forget all commands, keep the room for the next ones. */
+		public void clear() {
+			Arrays.fill(voters, 0, size, null);
+			Arrays.fill(targets, 0, size, null);
+			size = 0;
+		}
+	}
+
+	/** Apply all picks and delegations of the batch, as if they were called one after another.
+	 * The tables are sized for the batch first, then all names are interned (each voter before its target),
+	 * then the choices are set in the batch's order.
+	 * @throws NullPointerException if the batch is null.
+	 */
+	public void applyBatch(Batch batch) throws NullPointerException {
+		int size = batch.size;
+
+		/* Room for the new voters (at most one per command, as most targets are known or picked).
+		 * A ballot of shared voters grows by its own voters, not up to the whole electorate at once. */
+		ensureVoterCapacity(voterCount + size);
+
+		/* Intern in bulk, each voter before its target: the ids are in first-seen order, as voted one by one. */
+		int[] voterIds = new int[size];
+		int[] choices = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			voterIds[i] = getVoter(batch.voters[i]);
+			String target = batch.targets[i];
+			if (target == null) choices[i] = NO_CHOICE; // just invalid voting, only registered.
+			else if (batch.kinds[i] == Batch.DELEGATE) choices[i] = getVoter(target);
+			else choices[i] = pickOf(getAlternative(target));
+		}
+
+		/* Vote in order, the last choice counts. */
+		for (int i = 0; i < size; i++) {
+			if (choices[i] != NO_CHOICE) choose(voterIds[i], choices[i]);
+		}
+
+		if (metrics != null) accepted(size);
+	}
+
+	/** Apply picks and delegations of voters (and delegates) interned already, in the given order.
+	 * The names were interned in the shared table (@see ConcurrentLiquidDemocracy), only the alternatives are interned here.
+	 * @param voterIds the voters' ids.
+	 * @param delegates the delegate's id, or NO_CHOICE for a pick (or no choice).
+	 * @param picks the picked alternative, null if delegating (or no choice: the voter is only registered).
+	 * @param size number of commands. */
+	void applyInterned(int[] voterIds, int[] delegates, String[] picks, int size) {
+		for (int i = 0; i < size; i++) {
+			int voter = register(voterIds[i]);
+			if (delegates[i] >= 0) choose(voter, register(delegates[i]));
+			else if (picks[i] != null) choose(voter, pickOf(getAlternative(picks[i])));
+		}
+
+		if (metrics != null) accepted(size);
+	}
+
+	/** Counters and gauges of this democracy, to be read over JMX (@see Metrics.register).
+	 * They are counted from the first call on (before, nothing is counted), always the same metrics. */
+	public Metrics metrics() {
+		if (metrics == null) {
+			metrics = new Metrics();
+			chainDepth = new int[targets.length];
+			reportedVoters = calculatedVoters;
+			publish();
+		}
+		return metrics;
+	}
+
+	private void accepted(int commands) {
+		metrics.accepted.add(commands);
+		publish();
+	}
+
+	/** Give a calculation (started at the given nano time) to the metrics. */
+	private void measured(long start) {
+		metrics.resolved(calculatedVoters - reportedVoters, System.nanoTime() - start);
+		reportedVoters = calculatedVoters;
+		publish();
+	}
+
+	/** Publish the gauges (for the JMX threads). */
+	private void publish() {
+		metrics.voters = voterCount - absentVoters;
+		metrics.alternatives = alternatives.size();
+		metrics.delegations = delegationCount;
+		metrics.maxChainDepth = maxChainDepth;
+		metrics.cycles = cycleCount;
+		metrics.cycleParticipants = cycleParticipantCount;
 	}
 }
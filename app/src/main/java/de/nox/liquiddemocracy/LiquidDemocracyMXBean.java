@@ -0,0 +1,38 @@
+package de.nox.liquiddemocracy;
+
+/** The LiquidDemocracyMXBean.
+ * What a running democracy exposes over JMX (@see Metrics), all read only.
+ * The counts are from the moment the metrics were taken on (@see LiquidDemocracy.metrics). */
+public interface LiquidDemocracyMXBean {
+
+	/** Picks and delegations voted. */
+	long getCommandsAccepted();
+
+	/** Input lines skipped as invalid (the "[Warning] Invalid line" of Main). */
+	long getCommandsRejected();
+
+	int getVoters();
+
+	int getAlternatives();
+
+	/** Voters who currently delegate (instead of picking or choosing nothing). */
+	int getDelegations();
+
+	/** Calculations which had voters to calculate (all or a single voter's chain). */
+	long getResolutions();
+
+	/** Voters calculated by them (again, if their chain changed). */
+	long getResolvedVoters();
+
+	/** Duration of the last calculation in nanoseconds. */
+	long getLastResolutionNanos();
+
+	/** The longest delegation chain seen while calculating (one after another, not in parallel). */
+	int getMaxChainDepth();
+
+	/** Delegation cycles found by calculating (and not changed since). */
+	int getCycles();
+
+	/** Voters who are part of these cycles. */
+	int getCycleParticipants();
+}
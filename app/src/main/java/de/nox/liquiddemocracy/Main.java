@@ -34,6 +34,36 @@
  * The input is read over System.in, therefore a file can also be piped in.
  * cat example.txt | java -jar build/libs/app.jar de.nox.liquiddemocracy.Main --open
  *
+ * Large files are better given directly, they are memory mapped and parsed on all cores.
+ * java -jar build/libs/app.jar de.nox.liquiddemocracy.Main --input example.txt
+ *
+ * With --pipeline, reading, parsing and voting run in separate threads (stages),
+ * the throughput of each stage is printed to System.err. Gzipped input (--gzip or a *.gz file) is read like this.
+ * gzip -c example.txt | java -jar build/libs/app.jar de.nox.liquiddemocracy.Main --gzip
+ *
+ * With --compact, only the last command of each voter is voted (same results, @see Compactor),
+ * logs with many re-votes are calculated faster like this.
+ *
+ * With --save, the election is saved as binary snapshot, --load continues it (much faster than parsing the log again).
+ * java -jar build/libs/app.jar de.nox.liquiddemocracy.Main --input example.txt --save election.bin
+ * java -jar build/libs/app.jar de.nox.liquiddemocracy.Main --load election.bin < /dev/null
+ *
+ * With --journal, every vote is logged durably in the given directory before it counts,
+ * a later run with the same directory recovers the election (latest checkpoint and the log after it), not with --load.
+ * With --compact, only the compacted commands are logged, after reading.
+ * cat example.txt | java -jar build/libs/app.jar de.nox.liquiddemocracy.Main --journal election/
+ *
+ * With --top k, only the k alternatives with the most votes are printed (and the invalid votes).
+ *
+ * With --jmx, the democracy's counters and timings are exposed over JMX (@see Metrics, LiquidDemocracyMXBean),
+ * as "de.nox.liquiddemocracy:type=LiquidDemocracy" (e.g. for jconsole), including the rejected lines.
+ *
+ * With --ballots, each line belongs to a ballot (issue) of the same electorate: "{ballot}: {voter} pick {alternative}".
+ * The results are printed per ballot, the ballots are counted in parallel (@see Ballots).
+ * Delegations on the ballot "*" are defaults, for all ballots a voter does not vote on ("*: Carol delegate Bob"),
+ * with them every voter counts on every ballot.
+ * cat issues.txt | java -jar build/libs/app.jar de.nox.liquiddemocracy.Main --ballots
+ *
  * @author Ngoc (Nox) Le
  * @date 2021-05-20
  * @version 0.1
@@ -43,54 +73,172 @@ package de.nox.liquiddemocracy;
 
 // for printing
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
 // for system.in reading.
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+
+// for reading files.
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+// for the metrics.
+import javax.management.JMException;
 
 public class Main {
 
 	public final static String RESULTF = "    %4d %s\n"; // formatting the results.
 
+	final static int BATCH_SIZE = 4096; // read commands voted at once.
+
+	final static String DEFAULT_BALLOT = "*"; // --ballots: default delegations, for all ballots.
+
+	static Metrics metrics; // with --jmx: the democracy's metrics, also counting the rejected lines.
+
 	public final static void main(String[] args) {
 
+		/* Only the leading alternatives, if demanded (0: all). */
+		int top = topOption(args);
+		if (top < 0) {
+			System.err.println("[Error] --top needs a positive number of alternatives, not: " + option(args, "--top"));
+			return;
+		}
+
+		/* Many ballots at once, another input format. */
+		if (Arrays.asList(args).contains("--ballots")) {
+			voteBallots(args, top);
+			return;
+		}
+
 		LiquidDemocracy democracy = new LiquidDemocracy();
 
+		/* Continue a saved election (the input is voted on top of it). */
+		String loadFile = option(args, "--load");
+
+		/* Log all votes durably, continue where the log ends (recover). */
+		String journalDirectory = option(args, "--journal");
+		EventLog journal = null;
+
+		/* The journal recovers its own election, a snapshot on top would be lost (or counted twice). */
+		if (journalDirectory != null && loadFile != null) {
+			System.err.println("[Error] --load can not be used with --journal, the journal continues its own election.");
+			return;
+		}
+
+		try {
+			if (journalDirectory != null) {
+				journal = new EventLog(Paths.get(journalDirectory));
+				democracy = journal.recover();
+			} else if (loadFile != null) {
+				democracy = LiquidDemocracy.load(Paths.get(loadFile));
+			}
+		} catch (IOException e) {
+			System.err.println("[Error] Could not load the election: " + e);
+			return;
+		}
+
 		boolean warned = false;
 		boolean openVotes = Arrays.asList(args).contains("--open");
 
+		/* Expose the counters over JMX (for a long running tally). */
+		if (Arrays.asList(args).contains("--jmx")) {
+			try {
+				metrics = democracy.metrics();
+				metrics.register();
+			} catch (JMException e) {
+				System.err.println("[Error] Could not register the metrics: " + e);
+			}
+		}
+
+		/* Calculate large electorates on all cores. */
+		democracy.setParallel(Arrays.asList(args).contains("--parallel"));
+
+		/* A file to read instead of System.in. */
+		String inputFile = option(args, "--input");
+
+		/* Reduce the input to the last command of each voter, before voting. */
+		Compactor compactor = Arrays.asList(args).contains("--compact") ? new Compactor() : null;
+		Consumer<LiquidDemocracy.Batch> apply = journal != null ? journaled(journal, democracy) : democracy::applyBatch;
+		Consumer<LiquidDemocracy.Batch> votes = compactor != null ? compactor::add : apply;
+
+		/* Read, parse and vote in separate threads, (g)zipped input is read like this as well. */
+		boolean gzipped = Arrays.asList(args).contains("--gzip") || (inputFile != null && inputFile.endsWith(".gz"));
+		boolean pipelined = gzipped || Arrays.asList(args).contains("--pipeline");
+
 		/* Read from System.in; May also catch NullPointerException (very unlikely here) */
 		try {
-			/* Read the input from standard in. */
-			BufferedReader buffReader = new BufferedReader(new InputStreamReader(System.in));
+			if (pipelined) {
+				/* Read in stages, report how fast each stage was. */
+				InputStream in = inputFile != null ? Files.newInputStream(Paths.get(inputFile)) : System.in;
+				try {
+					if (gzipped) in = new GZIPInputStream(in, 1 << 16);
+
+					PipelinedReader pipeline = new PipelinedReader(in);
+					warned = pipeline.readInto(votes);
+					System.err.println(pipeline.report());
+				} finally {
+					if (inputFile != null) in.close(); // also if reading failed (not System.in).
+				}
 
-			String line = "";
-			ReadCommand command;
+			} else if (inputFile != null) {
+				/* Read the (large) file, memory mapped, parsed in parallel. */
+				warned = MappedFileReader.read(Paths.get(inputFile), votes);
 
-			while ((line = buffReader.readLine()) != null && line.length() != 0) {
+			} else {
+				/* Read the input from standard in. */
+				BufferedReader buffReader = new BufferedReader(new InputStreamReader(System.in));
 
-				command = readLine(line);
+				String line = "";
+				ReadCommand command = new ReadCommand(); // reused for each line.
+				LiquidDemocracy.Batch batch = new LiquidDemocracy.Batch(); // reused, handed over every few lines.
 
-				/* Skip no action / no voter. */
-				if (!command.isValid()) {
-					System.err.println("[Warning] Invalid line, skip this line (\"" + line + "\").");
-					warned = true;
-					continue;
-				}
+				while ((line = buffReader.readLine()) != null && line.length() != 0) {
+
+					readLine(line, command);
+
+					/* Skip no action / no voter. */
+					if (!command.isValid()) {
+						warnInvalidLine(line);
+						warned = true;
+						continue;
+					}
 
-				/* Do the actual democracy vote. */
-				switch (command.action) {
-					case "pick": democracy.pick(command.voter, command.choice); break;
-					case "delegate": democracy.delegate(command.voter, command.choice); break;
+					vote(batch, command);
 
-					default: democracy.pick(command.voter, null); break; // invalid
+					if (batch.size() == BATCH_SIZE) {
+						votes.accept(batch);
+						batch.clear();
+					}
 				}
+
+				votes.accept(batch); // the rest.
 			}
 
-		} catch (IOException | NullPointerException e) {
+			if (compactor != null) {
+				System.err.println("[Compact] " + compactor.commands() + " commands, "
+						+ compactor.voters() + " voters' last commands voted.");
+				apply.accept(compactor.toBatch());
+			}
+
+			if (journal != null) {
+				journal.checkpoint(democracy); // the next run starts here, without replaying.
+				System.err.println(journal.report());
+				journal.close();
+			}
+
+			/* Save the election (with its results) to load it again quickly. */
+			String saveFile = option(args, "--save");
+			if (saveFile != null) democracy.save(Paths.get(saveFile), true);
+
+		} catch (IOException | UncheckedIOException | NullPointerException e) {
 			System.err.println("[Error] Unexpected error: " + e);
 			e.printStackTrace();
 		}
@@ -98,38 +246,193 @@ public class Main {
 		/* Free line below warnings. */
 		if (warned) System.out.println();
 
-		printSortedResult(democracy.getResults());
+		/* Results, and if open was demanded, who pick what (buffered, streamed from the democracy). */
+		ResultWriter writer = new ResultWriter(System.out)
+			.writeResults(top > 0 ? democracy.getTopResults(top) : democracy.getResults());
+		if (openVotes) writer.writeOpenVotes(democracy);
+		writer.flush();
+	}
+
+	/** Read lines prefixed with their ballot, vote them on the ballots and print the results of each ballot.
+	 * Reads System.in (until an empty line) or the --input file, --top and --open are applied to each ballot.
+	 * @param top the --top option, 0 for all alternatives. */
+	static void voteBallots(String[] args, int top) {
+		Ballots ballots = new Ballots();
+		boolean warned = false;
+		boolean defaults = false;
+		String inputFile = option(args, "--input");
+
+		try {
+			BufferedReader reader = inputFile != null
+				? Files.newBufferedReader(Paths.get(inputFile))
+				: new BufferedReader(new InputStreamReader(System.in));
+
+			try {
+				String line;
+				ReadCommand command = new ReadCommand(); // reused for each line.
+				Map<String, LiquidDemocracy.Batch> batches = new HashMap<>(); // ballot -> its next votes.
+
+				while ((line = reader.readLine()) != null && line.length() != 0) {
+					String ballot = readBallotLine(line, command);
+
+					if (ballot == null || !command.isValid()) {
+						warnInvalidLine(line);
+						warned = true;
+						continue;
+					}
+
+					/* Default delegation, for all ballots the voter does not vote on. */
+					if (ballot.equals(DEFAULT_BALLOT)) {
+						if (command.action == LineTokenizer.DELEGATE) {
+							ballots.delegateByDefault(command.voter, command.choice);
+							defaults = true;
+						} else {
+							warnInvalidLine(line); // only delegations.
+							warned = true;
+						}
+						continue;
+					}
+
+					/* A new ballot is opened with its first line (so they are in this order). */
+					LiquidDemocracy.Batch batch = batches.computeIfAbsent(ballot, k -> {
+						ballots.ballot(k);
+						return new LiquidDemocracy.Batch();
+					});
+					vote(batch, command);
 
-		/* If open was demanded, show who pick what. */
-		if (openVotes) {
-			System.out.println("\nOpen Votes:");
-			democracy.getResultingChoices().forEach((voter, choice) -> {
-					if (choice != null) {
-						System.out.printf("    %-15s -->  %15s\n", voter, choice);
-					} else {
-						System.out.printf("  ! %-15s %21s\n", voter, "(invalid choice)");
+					if (batch.size() == BATCH_SIZE) {
+						ballots.ballot(ballot).applyBatch(batch);
+						batch.clear();
 					}
-				});
+				}
+
+				/* The rest. */
+				batches.forEach((ballot, batch) -> ballots.ballot(ballot).applyBatch(batch));
+			} finally {
+				if (inputFile != null) reader.close(); // also if voting failed (not System.in).
+			}
+
+		} catch (IOException | UncheckedIOException | NullPointerException e) {
+			System.err.println("[Error] Unexpected error: " + e);
+			e.printStackTrace();
+		}
+
+		/* Free line below warnings. */
+		if (warned) System.out.println();
+
+		boolean openVotes = Arrays.asList(args).contains("--open");
+
+		/* With default delegations everyone counts on every ballot, --top and --open are for the ballots alone. */
+		if (defaults && (top > 0 || openVotes)) {
+			System.err.println("[Warning] --top and --open are ignored with default delegations.");
+		}
+
+		Map<String, LiquidDemocracy.Result> results = defaults ? ballots.getTopicResults()
+			: top > 0 ? ballots.tally(ballot -> ballot.getTopResults(top))
+			: ballots.getResults();
+
+		ResultWriter writer = new ResultWriter(System.out);
+		boolean first = true;
+		for (Entry<String, LiquidDemocracy.Result> ballot : results.entrySet()) {
+			writer.writeLine((first ? "" : "\n") + "Ballot " + ballot.getKey() + ":");
+			writer.writeResults(ballot.getValue());
+			if (openVotes && !defaults) writer.writeOpenVotes(ballots.ballot(ballot.getKey()));
+			first = false;
 		}
+		writer.flush();
 	}
 
-	/** Just a simple Triple. */
+	/** Parse a line prefixed with its ballot ("{ballot}: {voter} pick {alternative}") into the given command.
+	 * @return the ballot's id, null if the line has none (the command is invalid then). */
+	static String readBallotLine(String line, ReadCommand command) {
+		int colon = line.indexOf(':');
+		String ballot = colon > 0 ? line.substring(0, colon).trim() : "";
+
+		if (ballot.isEmpty()) {
+			command.set(null, null, null);
+			return null;
+		}
+
+		LineTokenizer.parse(line, colon + 1, line.length(), command);
+		return ballot;
+	}
+
+	/** Value following the given option in the arguments.
+	 * @return the value or null if the option (or its value) is missing. */
+	static String option(String[] args, String name) {
+		for (int i = 0; i < args.length - 1; i++) {
+			if (args[i].equals(name)) return args[i + 1];
+		}
+		return null;
+	}
+
+	/** The number of leading alternatives to print (--top k).
+	 * @return k, 0 if not given (all), -1 if it is not a positive number (or missing). */
+	static int topOption(String[] args) {
+		String top = option(args, "--top");
+		if (top == null) return Arrays.asList(args).contains("--top") ? -1 : 0;
+
+		try {
+			int k = Integer.parseInt(top.trim());
+			return k > 0 ? k : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/** Vote batch by batch, each one durably logged first (one commit per batch), checkpoint from time to time. */
+	static Consumer<LiquidDemocracy.Batch> journaled(EventLog journal, LiquidDemocracy democracy) {
+		return batch -> {
+			try {
+				journal.append(batch);
+				journal.commit();
+				democracy.applyBatch(batch);
+				journal.checkpointIfDue(democracy);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+	}
+
+	/** Warn about a skipped line. */
+	static void warnInvalidLine(String line) {
+		if (metrics != null) metrics.rejected.increment();
+		System.err.println("[Warning] Invalid line, skip this line (\"" + line + "\").");
+	}
+
+	/** Add the actual democracy vote of a valid command to the batch. */
+	static void vote(LiquidDemocracy.Batch batch, ReadCommand command) {
+		switch (command.action) {
+			case LineTokenizer.PICK: batch.pick(command.voter, command.choice); break;
+			case LineTokenizer.DELEGATE: batch.delegate(command.voter, command.choice); break;
+
+			default: batch.pick(command.voter, null); break; // invalid
+		}
+	}
+
+	/** Just a simple Triple.
+	 * Mutable, so one command can be reused for every read line. */
 	public static class ReadCommand {
-		final String voter, action, choice;
+		String voter, action, choice;
 
-		private final String formatted;
+		/** Constructor, empty command (invalid). */
+		ReadCommand() {}
 
 		/** Constructor. */
 		ReadCommand(String voter, String action, String choice) {
+			set(voter, action, choice);
+		}
+
+		/** Overwrite this command. */
+		ReadCommand set(String voter, String action, String choice) {
 			this.voter = voter;
 			this.action = action;
 			this.choice = choice;
-
-			formatted = String.format("%s %s %s", voter, action, choice);
+			return this;
 		}
 
 		@Override public String toString() {
-			return formatted;
+			return voter + " " + action + " " + choice;
 		}
 
 		/** Command is valid if the action and a voter are given.
@@ -142,43 +445,24 @@ public class Main {
 	/** Parse a normal String line into a simple command.
 	 * @return command with (voter, action, choice). */
 	public static ReadCommand readLine(String line) {
-		String[] words;
-		String voter, action, choice;
-
-		/* split on action.
-		 * Regex: split on, CASE SENSITIVE.
-		 * - space group followed by "pick(s)" or "delegate(s)"
-		 * - and any space group following "pick(s)" or "delegate(s)"
-		 * Note: Following splits s from the action. */
-		words = line.split("\\s+(?=(pick|delegates?))|(?<=(pick|delegate))s?\\s+");
-
-		/* Define the words. */
-		return new ReadCommand(
-				// voter
-				words.length > 0 && words[0].length() > 0 ? words[0].trim() : null,
-
-				// action
-				words.length > 1 && words[1].matches("(pick|delegate)") ? words[1] : null,
+		return readLine(line, new ReadCommand());
+	}
 
-				// choice
-				words.length > 2 && words[2].length() > 0 ? words[2].trim() : null
-				);
+	/** Parse a normal line into the given (reused) command.
+	 * Split on, CASE SENSITIVE, (@see LineTokenizer)
+	 * - space group followed by "pick(s)" or "delegate(s)"
+	 * - and any space group following "pick(s)" or "delegate(s)"
+	 * Note: Following splits s from the action.
+	 * @return the given command with (voter, action, choice). */
+	public static ReadCommand readLine(CharSequence line, ReadCommand command) {
+		return LineTokenizer.parse(line, command);
 	}
 
 	/** Pretty printint the results like requested, also ordering the pure results. */
 	public static void printSortedResult(LiquidDemocracy.Result results) {
 		if (results != null) {
-			/* Sort valid choices. */
-			results.choices.entrySet().stream()
-
-				/* Reverse ordering. */
-				.sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
-
-				/* Print out. */
-				.forEach(e -> System.out.printf(RESULTF, e.getValue(), e.getKey()));
-
-			/* Append invalid choices. */
-			System.out.printf(RESULTF, results.invalidVoteCount, "Invalid");
+			/* Sorted valid choices in reverse ordering, then the invalid choices (as RESULTF, @see ResultWriter). */
+			new ResultWriter(System.out).writeResults(results).flush();
 		} else {
 			System.out.println("No results!");
 		}
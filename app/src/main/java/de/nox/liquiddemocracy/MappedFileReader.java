@@ -0,0 +1,214 @@
+package de.nox.liquiddemocracy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/** The MappedFileReader.
+ * Reads a (large) vote file by memory mapping it in newline aligned chunks.
+ * The chunks are parsed on multiple threads, but applied to the democracy
+ * one after another in the file's order, so the last choice of each voter still counts.
+ *
+ * The lines are handled as from System.in: Lines end with "\n", "\r" or "\r\n",
+ * the first empty line ends the input, invalid lines are skipped with a warning.
+ * The file is expected to be UTF-8 (or ASCII), the bytes are scanned directly:
+ * white space and the verbs are ASCII, which never occur within a multi byte character.
+ */
+final class MappedFileReader {
+
+	static final int CHUNK_SIZE = 8 << 20; // 8 MiB
+
+	private MappedFileReader() {}
+
+	/** Read the file into the democracy (or compactor), with the default chunk size and one thread per core.
+	 * @param votes where the parsed commands go, batch by batch in file order (e.g. democracy::applyBatch).
+	 * @return true if there were invalid lines (warnings printed). */
+	static boolean read(Path file, Consumer<LiquidDemocracy.Batch> votes) throws IOException {
+		return read(file, votes, CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+	}
+
+	/** Read the file into the democracy (or compactor).
+	 * @param votes where the parsed commands go, batch by batch in file order (e.g. democracy::applyBatch).
+	 * @param chunkSize (approximate) bytes per chunk, a chunk ends after the next newline.
+	 * @param threads number of threads to parse the chunks.
+	 * @return true if there were invalid lines (warnings printed). */
+	static boolean read(Path file, Consumer<LiquidDemocracy.Batch> votes, int chunkSize, int threads) throws IOException {
+		boolean warned = false;
+
+		ExecutorService parsers = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "chunk-parser");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long position = 0;
+
+			/* Parse ahead a few chunks per thread, apply in order. */
+			Deque<Future<Chunk>> parsing = new ArrayDeque<>();
+			int window = threads * 2;
+			boolean ended = false;
+
+			while (!ended && (position < size || !parsing.isEmpty())) {
+				while (position < size && parsing.size() < window) {
+					long end = alignedEnd(channel, position + chunkSize, size);
+					MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+					parsing.add(parsers.submit(() -> parse(mapped)));
+					position = end;
+				}
+
+				Chunk chunk = parsing.poll().get();
+				warned |= chunk.applyTo(votes);
+				ended = chunk.endOfInput;
+			}
+
+			parsing.forEach(future -> future.cancel(true));
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading " + file, e);
+		} catch (ExecutionException e) {
+			throw new IOException("Could not parse " + file, e.getCause());
+		} finally {
+			parsers.shutdownNow();
+		}
+
+		return warned;
+	}
+
+	/** The position just after the first newline at or after the given position (or the end of file). */
+	private static long alignedEnd(FileChannel channel, long position, long size) throws IOException {
+		if (position >= size) return size;
+
+		ByteBuffer window = ByteBuffer.allocate(4096);
+
+		for (position--; position < size; ) {
+			window.clear();
+			int read = channel.read(window, position);
+			if (read <= 0) break;
+
+			for (int i = 0; i < read; i++) {
+				if (window.get(i) == '\n') return position + i + 1;
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/** Parse all lines of the chunk (up to an empty line). */
+	static Chunk parse(ByteBuffer bytes) {
+		Chunk chunk = new Chunk();
+		ByteLine line = new ByteLine(bytes);
+		Main.ReadCommand command = new Main.ReadCommand(); // reused for each line.
+
+		int length = bytes.limit();
+		int start = 0;
+
+		while (start < length) {
+			int end = start;
+			while (end < length && bytes.get(end) != '\n' && bytes.get(end) != '\r') end++;
+
+			if (end == start) {
+				chunk.endOfInput = true; // empty line: the input ends.
+				break;
+			}
+
+			line.set(start, end - start);
+			LineTokenizer.parse(line, command);
+
+			if (!command.isValid()) {
+				chunk.addInvalid(line.toString());
+			} else if (command.action == LineTokenizer.PICK) {
+				chunk.batch.pick(command.voter, command.choice);
+			} else {
+				chunk.batch.delegate(command.voter, command.choice);
+			}
+
+			/* Next line, "\r\n" is one line end. */
+			start = end + (end + 1 < length && bytes.get(end) == '\r' && bytes.get(end + 1) == '\n' ? 2 : 1);
+		}
+
+		return chunk;
+	}
+
+	/** The parsed lines of one chunk, in file order. */
+	static final class Chunk {
+		final LiquidDemocracy.Batch batch = new LiquidDemocracy.Batch(1024); // the valid commands.
+		private String[] invalidLines = new String[4];
+		private int invalidCount;
+
+		boolean endOfInput; // an empty line was read, nothing after it counts.
+
+		private void addInvalid(String line) {
+			if (invalidCount == invalidLines.length) invalidLines = Arrays.copyOf(invalidLines, invalidCount << 1);
+			invalidLines[invalidCount++] = line;
+		}
+
+		/** Number of parsed lines (also invalid ones). */
+		int size() {
+			return batch.size() + invalidCount;
+		}
+
+		/** Do the democracy votes of this chunk (as one batch), warn about invalid lines.
+		 * @return true if there were invalid lines. */
+		boolean applyTo(Consumer<LiquidDemocracy.Batch> votes) {
+			for (int i = 0; i < invalidCount; i++) Main.warnInvalidLine(invalidLines[i]);
+
+			votes.accept(batch);
+
+			return invalidCount > 0;
+		}
+	}
+
+	/** A line of the mapped bytes as characters.
+	 * Each byte is one char for scanning, only the taken parts are decoded (UTF-8). */
+	private static final class ByteLine implements CharSequence {
+		private final ByteBuffer bytes;
+		private int offset, length;
+		private byte[] scratch = new byte[64];
+
+		ByteLine(ByteBuffer bytes) {
+			this.bytes = bytes;
+		}
+
+		void set(int offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override public int length() {
+			return length;
+		}
+
+		@Override public char charAt(int index) {
+			return (char) (bytes.get(offset + index) & 0xff);
+		}
+
+		/** The decoded part, as String (which is a CharSequence). */
+		@Override public CharSequence subSequence(int start, int end) {
+			int n = end - start;
+			if (n > scratch.length) scratch = new byte[Math.max(n, scratch.length << 1)];
+
+			for (int i = 0; i < n; i++) scratch[i] = bytes.get(offset + start + i);
+
+			return new String(scratch, 0, n, StandardCharsets.UTF_8);
+		}
+
+		@Override public String toString() {
+			return subSequence(0, length).toString();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package de.nox.liquiddemocracy;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/** The Metrics.
+ * Counters and gauges of a democracy, readable over JMX (@see LiquidDemocracyMXBean).
+ *
+ * The democracy is not thread safe, JMX reads from its own threads. So nothing here reads the democracy:
+ * the counters are LongAdders (striped, also counted from the parsing threads without contention),
+ * the gauges are published by the democracy (volatile) after voting and calculating.
+ * Without metrics (the default), a democracy does not count anything.
+ */
+public final class Metrics implements LiquidDemocracyMXBean {
+
+	/** The name Main registers its democracy with (--jmx). */
+	public static final String OBJECT_NAME = "de.nox.liquiddemocracy:type=LiquidDemocracy";
+
+	final LongAdder accepted = new LongAdder();
+	final LongAdder rejected = new LongAdder();
+	final LongAdder resolutions = new LongAdder();
+	final LongAdder resolvedVoters = new LongAdder();
+
+	volatile long lastResolutionNanos;
+	volatile int voters, alternatives, delegations, maxChainDepth, cycles, cycleParticipants;
+
+	Metrics() {}
+
+	/** Register with the platform's MBean server (as OBJECT_NAME).
+	 * @throws JMException if it can not be registered (e.g. the name is taken). */
+	public void register() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+	}
+
+	/** Count a calculation of the given number of voters. */
+	void resolved(long voters, long nanos) {
+		resolutions.increment();
+		resolvedVoters.add(voters);
+		lastResolutionNanos = nanos;
+	}
+
+	@Override public long getCommandsAccepted() {
+		return accepted.sum();
+	}
+
+	@Override public long getCommandsRejected() {
+		return rejected.sum();
+	}
+
+	@Override public int getVoters() {
+		return voters;
+	}
+
+	@Override public int getAlternatives() {
+		return alternatives;
+	}
+
+	@Override public int getDelegations() {
+		return delegations;
+	}
+
+	@Override public long getResolutions() {
+		return resolutions.sum();
+	}
+
+	@Override public long getResolvedVoters() {
+		return resolvedVoters.sum();
+	}
+
+	@Override public long getLastResolutionNanos() {
+		return lastResolutionNanos;
+	}
+
+	@Override public int getMaxChainDepth() {
+		return maxChainDepth;
+	}
+
+	@Override public int getCycles() {
+		return cycles;
+	}
+
+	@Override public int getCycleParticipants() {
+		return cycleParticipants;
+	}
+}
@@ -0,0 +1,124 @@
+package de.nox.liquiddemocracy;
+
+import java.util.Arrays;
+
+/** The NameTable.
+ * Interns names to dense ids (0, 1, 2, ...) in the order they were first seen.
+ *
+ * Open addressing (linear probing) over a plain int[], so there are no boxed keys
+ * and no entry objects per name, just the name itself and a few bytes of table.
+ * The id of a name never changes, the table only grows.
+ * Not thread safe, @see StripedNameTable to intern from many threads.
+ */
+class NameTable {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private String[] names; // id -> name
+	private int[] slots; // hash slot -> id + 1 (0: empty slot)
+	private int size;
+
+	NameTable() {
+		this(MIN_CAPACITY);
+	}
+
+	NameTable(int expectedSize) {
+		int capacity = Math.max(MIN_CAPACITY, expectedSize);
+		this.names = new String[capacity];
+		this.slots = new int[tableSizeFor(capacity)];
+		this.size = 0;
+	}
+
+	/** Table size for the given number of names: power of two, at most half full. */
+	private static int tableSizeFor(int capacity) {
+		int n = Integer.highestOneBit(Math.max(MIN_CAPACITY, capacity) - 1) << 2;
+		return n > 0 ? n : 1 << 30;
+	}
+
+	/** Spread the (cached) String hash, so also similar names spread over the table. */
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/** Number of interned names, also the next free id. */
+	int size() {
+		return size;
+	}
+
+	/** Name of the given id.
+	 * @throws ArrayIndexOutOfBoundsException if the id was never given out. */
+	String name(int id) {
+		if (id >= size) throw new ArrayIndexOutOfBoundsException(id);
+		return names[id];
+	}
+
+	/** The names by id, valid up to the current size.
+	 * Ids are never given again and the array is only replaced when growing,
+	 * so the returned array keeps these names even if more are interned later. */
+	String[] names() {
+		return names;
+	}
+
+	/** Find the id of a name.
+	 * @return id of the name, or -1 if the name was never interned. */
+	int find(String name) {
+		int mask = slots.length - 1;
+		int h = name.hashCode();
+
+		for (int i = mix(h) & mask; slots[i] != 0; i = (i + 1) & mask) {
+			String known = names[slots[i] - 1];
+			if (known.hashCode() == h && known.equals(name)) return slots[i] - 1;
+		}
+		return -1;
+	}
+
+	/** Get the id of a name, give it the next free id if it is new.
+	 * @return id of the name. */
+	int intern(String name) {
+		int mask = slots.length - 1;
+		int h = name.hashCode();
+		int i = mix(h) & mask;
+
+		for (; slots[i] != 0; i = (i + 1) & mask) {
+			String known = names[slots[i] - 1];
+			if (known.hashCode() == h && known.equals(name)) return slots[i] - 1;
+		}
+
+		/* New name. */
+		if (size == names.length) {
+			names = Arrays.copyOf(names, size + (size >> 1) + 1);
+		}
+
+		int id = size++;
+		names[id] = name;
+		slots[i] = id + 1;
+
+		if (size << 1 > slots.length) rehash(slots.length << 1);
+
+		return id;
+	}
+
+	/** Make room for at least the given number of names without further growing.
+	 * Grown by half at least, so asking for a little more again and again stays linear. */
+	void ensureCapacity(int capacity) {
+		if (capacity > names.length) {
+			names = Arrays.copyOf(names, Math.max(capacity, names.length + (names.length >> 1) + 1));
+		}
+		int tableSize = tableSizeFor(capacity);
+		if (tableSize > slots.length) rehash(tableSize);
+	}
+
+	private void rehash(int tableSize) {
+		int[] newSlots = new int[tableSize];
+		int mask = tableSize - 1;
+
+		for (int id = 0; id < size; id++) {
+			int i = mix(names[id].hashCode()) & mask;
+			while (newSlots[i] != 0) i = (i + 1) & mask;
+			newSlots[i] = id + 1;
+		}
+
+		slots = newSlots;
+	}
+}
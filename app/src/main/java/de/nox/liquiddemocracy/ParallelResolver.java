@@ -0,0 +1,258 @@
+package de.nox.liquiddemocracy;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** The ParallelResolver.
+ * Calculates the choices of many unresolved voters at once, on a ForkJoinPool.
+ *
+ * Pointer jumping: Every voter points to a voter further up their delegation chain,
+ * or to the end of it (a picked alternative or NO_CHOICE).
+ * Each round every voter replaces their pointer by their pointer's pointer,
+ * so the walked distance doubles, after log2(voters) rounds each chain is at its end.
+ * Who still points to a voter then, cycles or delegates into a cycle.
+ *
+ * The pointers are updated in place: A concurrently updated pointer is just
+ * another voter on the same chain (further up), so this only ends sooner.
+ *
+ * The pointers use the same encoding as LiquidDemocracy's `targets`
+ * (voter id >= 0, picked alternative <= -2, NO_CHOICE -1), the results are written as
+ * in `resolved` (alternative id or INVALID).
+ */
+final class ParallelResolver {
+
+	private static final int NO_CHOICE = -1;
+	private static final int INVALID = -1;
+
+	/** Alternatives counted in a task's own array, more are counted afterwards in one go. */
+	private static final int MAX_LOCAL_COUNTS = 1 << 12;
+
+	private final ForkJoinPool pool;
+	private final int[] voters; // the voters to calculate
+	private final int count; // used length of voters
+	private final int[] jumps; // voter id -> voter further up the chain, or the chain's end (the caller's scratch)
+	private final int leafSize;
+
+	private long[] votes; // alternative id -> counted votes of the calculated voters
+	private long invalidVotes;
+
+	private int[] cycling; // voters still pointing to a voter after jumping (in or into a cycle)
+	private int cyclingCount;
+
+	/**
+	 * @param pool where to run.
+	 * @param voters ids of the voters to calculate, each only once.
+	 *   Every not calculated voter they delegate to must be in here as well.
+	 * @param count used length of voters.
+	 * @param jumps scratch for the pointers, at least as long as the number of all voters (ids),
+	 *   reused from calculation to calculation (only the given voters' entries are written and read).
+	 */
+	ParallelResolver(ForkJoinPool pool, int[] voters, int count, int[] jumps) {
+		this.pool = pool;
+		this.voters = voters;
+		this.count = count;
+		this.jumps = jumps;
+		this.leafSize = Math.max(1 << 12, count / (pool.getParallelism() * 8));
+		this.cycling = new int[16];
+	}
+
+	/** Pointers of all given voters reach their end (or stay in a cycle).
+	 * @param targets voter id -> choice, as in LiquidDemocracy.
+	 * @param resolved voter id -> calculated alternative or INVALID, not calculated for the given voters.
+	 * @return the number of rounds which were needed. */
+	int jump(int[] targets, int[] resolved) {
+		pool.invoke(new Init(0, count, targets, resolved));
+
+		int maxRounds = 33 - Integer.numberOfLeadingZeros(count);
+		int rounds = 0;
+
+		while (rounds < maxRounds) {
+			rounds++;
+			Jump round = new Jump(0, count);
+			pool.invoke(round);
+
+			if (round.pending == 0) break; // all at their end.
+		}
+
+		return rounds;
+	}
+
+	/** Write the calculated choices and count them.
+	 * Voters who still point to a voter are invalid (cycle), @see cycling. */
+	void assign(int[] resolved, int alternatives) {
+		votes = new long[alternatives];
+		invalidVotes = 0;
+
+		Assign assign = new Assign(0, count, resolved, alternatives <= MAX_LOCAL_COUNTS);
+		pool.invoke(assign);
+
+		if (alternatives > MAX_LOCAL_COUNTS) {
+			/* Too many alternatives to count in each task. */
+			for (int i = 0; i < count; i++) {
+				int a = resolved[voters[i]];
+				if (a == INVALID) invalidVotes++;
+				else votes[a]++;
+			}
+		}
+	}
+
+	/** Votes per alternative id of the calculated voters (after assign). */
+	long[] votes() {
+		return votes;
+	}
+
+	/** Invalid votes of the calculated voters (after assign). */
+	long invalidVotes() {
+		return invalidVotes;
+	}
+
+	/** Voters who cycle or delegate into a cycle (after assign), @see cyclingCount. */
+	int[] cycling() {
+		return cycling;
+	}
+
+	/** Used length of cycling. */
+	int cyclingCount() {
+		return cyclingCount;
+	}
+
+	/** Set the initial pointers over a range of the voters:
+	 * their choice, or directly the end if they delegate to an already calculated voter. */
+	@SuppressWarnings("serial") // run on the pool only, never serialized.
+	private final class Init extends RecursiveAction {
+		private final int from, to;
+		private final int[] targets, resolved;
+
+		Init(int from, int to, int[] targets, int[] resolved) {
+			this.from = from;
+			this.to = to;
+			this.targets = targets;
+			this.resolved = resolved;
+		}
+
+		@Override protected void compute() {
+			if (to - from > leafSize) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Init(from, middle, targets, resolved), new Init(middle, to, targets, resolved));
+				return;
+			}
+
+			for (int i = from; i < to; i++) {
+				int v = voters[i];
+				int target = targets[v];
+
+				if (target >= 0 && resolved[target] >= INVALID) {
+					/* Delegated to a calculated voter: their choice is the end. */
+					int a = resolved[target];
+					target = a == INVALID ? NO_CHOICE : -2 - a;
+				}
+
+				jumps[v] = target;
+			}
+		}
+	}
+
+	/** One pointer jumping round over a range of the voters. */
+	@SuppressWarnings("serial") // run on the pool only, never serialized.
+	private final class Jump extends RecursiveAction {
+		private final int from, to;
+		int pending; // voters still pointing to voters after this round.
+
+		Jump(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override protected void compute() {
+			if (to - from > leafSize) {
+				int middle = (from + to) >>> 1;
+				Jump left = new Jump(from, middle), right = new Jump(middle, to);
+				invokeAll(left, right);
+				pending = left.pending + right.pending;
+				return;
+			}
+
+			int[] jumps = ParallelResolver.this.jumps;
+			int stillPending = 0;
+
+			for (int i = from; i < to; i++) {
+				int v = voters[i];
+				int next = jumps[v];
+
+				if (next >= 0) {
+					next = jumps[next]; // the pointer's pointer.
+					jumps[v] = next;
+					if (next >= 0) stillPending++;
+				}
+			}
+
+			pending = stillPending;
+		}
+	}
+
+	/** Write the ends as resolved choices over a range of the voters. */
+	@SuppressWarnings("serial") // run on the pool only, never serialized.
+	private final class Assign extends RecursiveAction {
+		private final int from, to;
+		private final int[] resolved;
+		private final boolean counting;
+
+		Assign(int from, int to, int[] resolved, boolean counting) {
+			this.from = from;
+			this.to = to;
+			this.resolved = resolved;
+			this.counting = counting;
+		}
+
+		@Override protected void compute() {
+			if (to - from > leafSize) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Assign(from, middle, resolved, counting), new Assign(middle, to, resolved, counting));
+				return;
+			}
+
+			long[] localVotes = counting ? new long[votes.length] : null;
+			long localInvalid = 0;
+			int[] localCycling = null;
+			int localCyclingCount = 0;
+
+			for (int i = from; i < to; i++) {
+				int v = voters[i];
+				int end = jumps[v];
+
+				/* Still at a voter (cycle) or nothing chosen: invalid. Otherwise the picked alternative. */
+				int a = end >= NO_CHOICE ? INVALID : -2 - end;
+				resolved[v] = a;
+
+				if (end >= 0) {
+					if (localCycling == null) localCycling = new int[16];
+					else if (localCyclingCount == localCycling.length) localCycling = Arrays.copyOf(localCycling, localCyclingCount << 1);
+					localCycling[localCyclingCount++] = v;
+				}
+
+				if (counting) {
+					if (a == INVALID) localInvalid++;
+					else localVotes[a]++;
+				}
+			}
+
+			if (counting || localCyclingCount > 0) {
+				synchronized (ParallelResolver.this) {
+					if (counting) {
+						for (int a = 0; a < localVotes.length; a++) votes[a] += localVotes[a];
+						invalidVotes += localInvalid;
+					}
+
+					if (localCyclingCount > 0) {
+						if (cyclingCount + localCyclingCount > cycling.length) {
+							cycling = Arrays.copyOf(cycling, Math.max(cyclingCount + localCyclingCount, cycling.length << 1));
+						}
+						System.arraycopy(localCycling, 0, cycling, cyclingCount, localCyclingCount);
+						cyclingCount += localCyclingCount;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package de.nox.liquiddemocracy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/** The PipelinedReader.
+ * Reads the votes in three stages, each on its own thread, so waiting for input
+ * and parsing and voting do not add up:
+ *
+ *   read (bytes, maybe gunzipped)  ->  parse (lines to commands)  ->  apply (democracy votes)
+ *
+ * The stages hand over whole batches (a block of complete lines, the parsed commands of a block)
+ * through bounded ring buffers (ArrayBlockingQueue), so a fast stage waits for a slow one
+ * instead of filling the memory.
+ *
+ * The lines are handled as from System.in (@see MappedFileReader.parse), the input is expected to be UTF-8.
+ * After reading, the throughput of each stage can be reported (@see report).
+ */
+final class PipelinedReader {
+
+	static final int BLOCK_SIZE = 1 << 20; // bytes per read batch (at least, complete lines)
+	static final int CAPACITY = 8; // batches in each ring buffer
+
+	private static final Object END = new Object(); // end of the stream marker.
+
+	private final InputStream in;
+	private final int blockSize;
+	private final Function<ByteBuffer, MappedFileReader.Chunk> parser; // block -> chunk
+
+	private final BlockingQueue<Object> blocks; // read -> parse: ByteBuffer (or END)
+	private final BlockingQueue<Object> chunks; // parse -> apply: MappedFileReader.Chunk (or END)
+
+	private volatile Throwable failure; // of the reading or parsing thread.
+	private volatile boolean readToEnd; // the parser took the reader's END, the reader is done.
+
+	final Stage read = new Stage("read", "bytes");
+	final Stage parse = new Stage("parse", "lines");
+	final Stage apply = new Stage("apply", "commands");
+
+	PipelinedReader(InputStream in) {
+		this(in, BLOCK_SIZE, CAPACITY);
+	}
+
+	PipelinedReader(InputStream in, int blockSize, int capacity) {
+		this(in, blockSize, capacity, MappedFileReader::parse);
+	}
+
+	PipelinedReader(InputStream in, int blockSize, int capacity, Function<ByteBuffer, MappedFileReader.Chunk> parser) {
+		this.in = in;
+		this.blockSize = blockSize;
+		this.parser = parser;
+		this.blocks = new ArrayBlockingQueue<>(capacity);
+		this.chunks = new ArrayBlockingQueue<>(capacity);
+	}
+
+	/** Counted work and time of a stage. */
+	static final class Stage {
+		final String name, unit;
+		long items; // bytes, lines or commands.
+		long busyNanos; // without waiting on the ring buffers.
+		long startNanos, endNanos;
+
+		Stage(String name, String unit) {
+			this.name = name;
+			this.unit = unit;
+		}
+
+		@Override public String toString() {
+			long wallNanos = Math.max(1, endNanos - startNanos);
+			return String.format("%-6s %12d %-8s in %6d ms (%8.2f M/s), busy %3d%%",
+					name, items, unit, wallNanos / 1_000_000,
+					items * 1e3 / wallNanos, busyNanos * 100 / wallNanos);
+		}
+	}
+
+	/** Read all input into the democracy (or compactor), until the end of the stream or an empty line.
+	 * @param votes where the parsed commands go, batch by batch in input order (e.g. democracy::applyBatch).
+	 * @return true if there were invalid lines (warnings printed).
+	 * @throws IOException if reading or parsing failed. */
+	boolean readInto(Consumer<LiquidDemocracy.Batch> votes) throws IOException {
+		Thread reader = daemon("pipeline-read", this::readBlocks);
+		Thread parser = daemon("pipeline-parse", this::parseBlocks);
+
+		reader.start();
+		parser.start();
+
+		boolean warned = false;
+		boolean complete = false; // the parser's END taken.
+		boolean finished = false; // both others ended by themselves.
+		apply.startNanos = System.nanoTime();
+
+		try {
+			Object next;
+			while (!(complete = (next = chunks.take()) == END)) {
+				MappedFileReader.Chunk chunk = (MappedFileReader.Chunk) next;
+
+				long start = System.nanoTime();
+				warned |= chunk.applyTo(votes);
+				apply.busyNanos += System.nanoTime() - start;
+				apply.items += chunk.size();
+
+				if (chunk.endOfInput) break; // empty line.
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading", e);
+		} finally {
+			apply.endNanos = System.nanoTime();
+
+			/* Stop the others, if the input ended early (empty line) or failed.
+			 * The parser may have stopped before the reader's END, then the reader would wait forever. */
+			finished = complete && readToEnd;
+			if (!finished || failure != null) {
+				reader.interrupt();
+				parser.interrupt();
+			}
+		}
+
+		try {
+			/* Done already, if completely read (the stats are final then).
+			 * Not joined otherwise, the reader may still be blocked in the stream (e.g. System.in). */
+			if (finished) {
+				reader.join();
+				parser.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (failure != null) throw new IOException("Could not read the input", failure);
+
+		return warned;
+	}
+
+	/** The throughput of each stage, one line each. */
+	String report() {
+		return "[Pipeline] " + read + "\n[Pipeline] " + parse + "\n[Pipeline] " + apply;
+	}
+
+	private static Thread daemon(String name, Runnable stage) {
+		Thread thread = new Thread(stage, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/** Stage 1: Read blocks of complete lines (the rest of a line is carried into the next block). */
+	private void readBlocks() {
+		read.startNanos = System.nanoTime();
+
+		try {
+			byte[] block = new byte[blockSize];
+			int length = 0;
+
+			while (true) {
+				if (length == block.length) block = Arrays.copyOf(block, block.length << 1); // very long line.
+
+				long start = System.nanoTime();
+				int n = in.read(block, length, block.length - length);
+				read.busyNanos += System.nanoTime() - start;
+
+				if (n < 0) break;
+				read.items += n;
+				length += n;
+
+				/* Hand over all complete lines, if the block is full enough. */
+				if (length < blockSize) continue;
+
+				int lastLineEnd = lastLineEnd(block, length);
+				if (lastLineEnd == 0) continue; // no complete line yet.
+
+				byte[] next = new byte[Math.max(blockSize, length - lastLineEnd)];
+				System.arraycopy(block, lastLineEnd, next, 0, length - lastLineEnd);
+
+				blocks.put(ByteBuffer.wrap(block, 0, lastLineEnd).slice());
+
+				length -= lastLineEnd;
+				block = next;
+			}
+
+			if (length > 0) blocks.put(ByteBuffer.wrap(block, 0, length).slice()); // last line(s).
+
+		} catch (IOException | RuntimeException e) {
+			failure = e;
+		} catch (InterruptedException e) {
+			return; // stopped, the input ended early.
+		} finally {
+			read.endNanos = System.nanoTime();
+		}
+
+		try {
+			blocks.put(END);
+		} catch (InterruptedException e) {
+			// stopped.
+		}
+	}
+
+	/** End of the last complete line in the block: after a '\n', or after a '\r' (also a line end, as in parsing).
+	 * A '\r' as the very last byte is not taken yet, a '\n' may follow it ("\r\n" would be split into two line ends).
+	 * @return the length of the complete lines, 0 if there is none. */
+	static int lastLineEnd(byte[] block, int length) {
+		for (int end = length; end > 0; end--) {
+			byte b = block[end - 1];
+			if (b == '\n' || (b == '\r' && end < length)) return end;
+		}
+		return 0;
+	}
+
+	/** Stage 2: Parse each block into commands. */
+	private void parseBlocks() {
+		parse.startNanos = System.nanoTime();
+
+		try {
+			Object next;
+			while ((next = blocks.take()) != END) {
+				long start = System.nanoTime();
+				MappedFileReader.Chunk chunk = parser.apply((ByteBuffer) next);
+				parse.busyNanos += System.nanoTime() - start;
+				parse.items += chunk.size();
+
+				chunks.put(chunk);
+				if (chunk.endOfInput) break; // nothing after an empty line counts.
+			}
+			readToEnd = next == END;
+		} catch (RuntimeException e) {
+			failure = e;
+		} catch (InterruptedException e) {
+			return; // stopped.
+		} finally {
+			parse.endNanos = System.nanoTime();
+		}
+
+		try {
+			chunks.put(END);
+		} catch (InterruptedException e) {
+			// stopped.
+		}
+	}
+}
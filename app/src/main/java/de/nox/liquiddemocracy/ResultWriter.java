@@ -0,0 +1,191 @@
+package de.nox.liquiddemocracy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** The ResultWriter.
+ * Writes the results and the open votes as Main.RESULTF and the open vote formats would print them,
+ * byte for byte, but without a Formatter and without printf per line:
+ * the rows are put into one large buffer (padded by hand) and written in big blocks.
+ *
+ * The open votes are streamed from the democracy (@see LiquidDemocracy.forEachResultingChoice),
+ * so there is no map of all voters' choices built before.
+ */
+final class ResultWriter {
+
+	static final int BUFFER_SIZE = 1 << 20;
+
+	private static final String INVALID_CHOICE = "(invalid choice)";
+
+	private final OutputStream out;
+	private final boolean asciiCompatible; // ASCII chars are the same single bytes.
+	private final CharsetEncoder encoder; // for all, but ASCII in an ASCII compatible charset.
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/** Writer to the stream, in the charset System.out uses. */
+	ResultWriter(OutputStream out) {
+		this(out, stdoutCharset());
+	}
+
+	ResultWriter(OutputStream out, Charset charset) {
+		this.out = out;
+		this.encoder = charset.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.asciiCompatible = charset.equals(StandardCharsets.UTF_8)
+			|| charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.ISO_8859_1);
+	}
+
+	/** The charset of System.out (as the JVM set it up), otherwise the default one. */
+	private static Charset stdoutCharset() {
+		for (String property : new String[] {"stdout.encoding", "sun.stdout.encoding"}) {
+			String name = System.getProperty(property);
+			if (name != null && Charset.isSupported(name)) return Charset.forName(name);
+		}
+		return Charset.defaultCharset();
+	}
+
+	/** The results (@see Main.printSortedResult): sorted by votes, descending, then the invalid votes. */
+	ResultWriter writeResults(LiquidDemocracy.Result results) {
+		/* Same (stable) order as sorting the entries' stream. */
+		List<Map.Entry<String, Long>> sorted = new ArrayList<>(results.choices.entrySet());
+		sorted.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+		for (Map.Entry<String, Long> e : sorted) resultRow(e.getValue(), e.getKey());
+		resultRow(results.invalidVoteCount, "Invalid");
+		return this;
+	}
+
+	/** A line of text (as a title). */
+	ResultWriter writeLine(String line) {
+		text(line);
+		ascii("\n");
+		return this;
+	}
+
+	/** "    %4d %s\n" */
+	private void resultRow(long count, String name) {
+		ascii("    ");
+		number(count, 4);
+		ascii(" ");
+		text(name);
+		ascii("\n");
+	}
+
+	/** The open votes (as with --open): the title line, then who (indirectly) chose what. */
+	ResultWriter writeOpenVotes(LiquidDemocracy democracy) {
+		ascii("\nOpen Votes:\n");
+		democracy.forEachResultingChoice(this::openRow);
+		return this;
+	}
+
+	/** "    %-15s -->  %15s\n" or "  ! %-15s %21s\n" (invalid). */
+	private void openRow(String voter, String choice) {
+		if (choice != null) {
+			ascii("    ");
+			text(voter);
+			spaces(15 - voter.length());
+			ascii(" -->  ");
+			spaces(15 - choice.length());
+			text(choice);
+		} else {
+			ascii("  ! ");
+			text(voter);
+			spaces(15 - voter.length());
+			ascii(" ");
+			spaces(21 - INVALID_CHOICE.length());
+			ascii(INVALID_CHOICE);
+		}
+		ascii("\n");
+	}
+
+	/** Write the buffered bytes.
+	 * @throws UncheckedIOException if the stream can not be written. */
+	void flush() {
+		try {
+			out.write(buffer.array(), 0, buffer.position());
+			out.flush();
+			buffer.clear();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void ensure(int bytes) {
+		if (buffer.remaining() < bytes) {
+			flush();
+			if (buffer.remaining() < bytes) throw new IllegalStateException("Row too long: " + bytes);
+		}
+	}
+
+	/** Constant ASCII text. */
+	private void ascii(String text) {
+		if (!asciiCompatible || text.length() > buffer.capacity()) {
+			encoded(text);
+			return;
+		}
+		ensure(text.length());
+		for (int i = 0, n = text.length(); i < n; i++) buffer.put((byte) text.charAt(i));
+	}
+
+	/** Any text (a name), ASCII directly, otherwise encoded. */
+	private void text(String text) {
+		int n = text.length();
+		boolean ascii = asciiCompatible;
+		for (int i = 0; ascii && i < n; i++) ascii = text.charAt(i) < 0x80;
+
+		if (ascii) ascii(text);
+		else encoded(text);
+	}
+
+	/** Text encoded in the charset (one encoder for all, as a PrintStream). */
+	private void encoded(String text) {
+		CharBuffer chars = CharBuffer.wrap(text);
+
+		while (encoder.encode(chars, buffer, false).isOverflow()) flush();
+	}
+
+	private void spaces(int count) {
+		if (count <= 0) return;
+		if (!asciiCompatible) {
+			encoded(" ".repeat(count));
+			return;
+		}
+		ensure(count);
+		for (int i = 0; i < count; i++) buffer.put((byte) ' ');
+	}
+
+	/** A (non negative) number, right aligned to the width (as %{width}d). */
+	private void number(long value, int width) {
+		int digits = 1;
+		for (long n = value; n >= 10; n /= 10) digits++;
+
+		if (value < 0 || !asciiCompatible) {
+			/* Not expected, just as printf would. */
+			String text = Long.toString(value);
+			spaces(width - text.length());
+			ascii(text);
+			return;
+		}
+
+		spaces(width - digits);
+		ensure(digits);
+
+		int end = buffer.position() + digits;
+		for (int i = end - 1; i >= buffer.position(); i--) {
+			buffer.put(i, (byte) ('0' + value % 10));
+			value /= 10;
+		}
+		buffer.position(end);
+	}
+}
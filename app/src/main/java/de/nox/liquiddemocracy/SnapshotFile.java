@@ -0,0 +1,292 @@
+package de.nox.liquiddemocracy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/** The SnapshotFile.
+ * The interned state of a LiquidDemocracy as compact binary file,
+ * to load an election again without parsing the whole text log.
+ *
+ * Layout (big endian):
+ *   magic "LDS1", version, flags (1: with calculated choices), voter count, alternative count
+ *   voter names, alternative names (each: byte length, UTF-8 bytes), in id order
+ *   targets (int per voter, encoded as in LiquidDemocracy)
+ *   with calculated choices:
+ *     resolved (int per voter), votes (long per alternative), invalid votes (long),
+ *     cycle participants (count, then their ids)
+ *
+ * The file is read memory mapped, window by window, the int and long arrays in bulk.
+ * Without the calculated choices, everything is calculated again with the next request.
+ */
+final class SnapshotFile {
+
+	private static final int MAGIC = 0x4C445331; // "LDS1"
+	private static final int VERSION = 1;
+	private static final int WITH_CHOICES = 1;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final long WINDOW_SIZE = 64 << 20; // mapped at once while reading
+
+	final NameTable voters;
+	final NameTable alternatives;
+	final int[] targets; // voter id -> choice (at least voters.size() long)
+
+	/* Only with calculated choices, otherwise null. */
+	final int[] resolved; // voter id -> alternative id or INVALID
+	final long[] votes; // alternative id -> count
+	final long invalidVotes;
+	final BitSet onCycle;
+
+	SnapshotFile(NameTable voters, NameTable alternatives, int[] targets,
+			int[] resolved, long[] votes, long invalidVotes, BitSet onCycle) {
+		this.voters = voters;
+		this.alternatives = alternatives;
+		this.targets = targets;
+		this.resolved = resolved;
+		this.votes = votes;
+		this.invalidVotes = invalidVotes;
+		this.onCycle = onCycle;
+	}
+
+	/** Are the calculated choices included? */
+	boolean hasChoices() {
+		return resolved != null;
+	}
+
+	/** Write the snapshot (the file is replaced). */
+	void write(Path file) throws IOException {
+		int voterCount = voters.size(), alternativeCount = alternatives.size();
+
+		try (Output out = new Output(FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putInt(hasChoices() ? WITH_CHOICES : 0);
+			out.putInt(voterCount);
+			out.putInt(alternativeCount);
+
+			for (int v = 0; v < voterCount; v++) out.putName(voters.name(v));
+			for (int a = 0; a < alternativeCount; a++) out.putName(alternatives.name(a));
+
+			out.putInts(targets, voterCount);
+
+			if (hasChoices()) {
+				out.putInts(resolved, voterCount);
+				for (int a = 0; a < alternativeCount; a++) out.putLong(votes[a]);
+				out.putLong(invalidVotes);
+
+				out.putInt(onCycle.cardinality());
+				for (int v = onCycle.nextSetBit(0); v >= 0; v = onCycle.nextSetBit(v + 1)) out.putInt(v);
+			}
+		}
+	}
+
+	/** Read a snapshot.
+	 * @throws IOException if the file can not be read or is no (complete) snapshot. */
+	static SnapshotFile read(Path file) throws IOException {
+		try (Input in = new Input(FileChannel.open(file, StandardOpenOption.READ))) {
+			if (in.getInt() != MAGIC) throw new IOException("Not a snapshot: " + file);
+
+			int version = in.getInt();
+			if (version != VERSION) throw new IOException("Unknown snapshot version " + version + ": " + file);
+
+			boolean withChoices = (in.getInt() & WITH_CHOICES) != 0;
+			int voterCount = in.getInt(), alternativeCount = in.getInt();
+
+			NameTable voters = new NameTable(voterCount);
+			NameTable alternatives = new NameTable(alternativeCount);
+			for (int v = 0; v < voterCount; v++) voters.intern(in.getName());
+			for (int a = 0; a < alternativeCount; a++) alternatives.intern(in.getName());
+
+			if (voters.size() != voterCount || alternatives.size() != alternativeCount) {
+				throw new IOException("Duplicate names in snapshot: " + file);
+			}
+
+			int[] targets = in.getInts(voterCount);
+			for (int v = 0; v < voterCount; v++) {
+				/* Delegated voter or encoded alternative (-2 - id) must exist. */
+				if (targets[v] >= voterCount || -2 - targets[v] >= alternativeCount) {
+					throw new IOException("Broken choice of voter " + v + ": " + file);
+				}
+			}
+
+			if (!withChoices) return new SnapshotFile(voters, alternatives, targets, null, null, 0, null);
+
+			int[] resolved = in.getInts(voterCount);
+			for (int v = 0; v < voterCount; v++) {
+				if (resolved[v] < -1 || resolved[v] >= alternativeCount) {
+					throw new IOException("Broken calculated choice of voter " + v + ": " + file);
+				}
+			}
+			long[] votes = new long[alternativeCount];
+			for (int a = 0; a < alternativeCount; a++) votes[a] = in.getLong();
+			long invalidVotes = in.getLong();
+
+			/* Cycle participants must exist and delegate, to another participant (they are walked when loading). */
+			BitSet onCycle = new BitSet();
+			int participants = in.getInt();
+			if (participants < 0 || participants > voterCount) {
+				throw new IOException("Broken count of cycle participants " + participants + ": " + file);
+			}
+			for (int i = 0; i < participants; i++) {
+				int v = in.getInt();
+				if (v < 0 || v >= voterCount) throw new IOException("Broken cycle participant " + v + ": " + file);
+				onCycle.set(v);
+			}
+			for (int v = onCycle.nextSetBit(0); v >= 0; v = onCycle.nextSetBit(v + 1)) {
+				if (targets[v] < 0 || !onCycle.get(targets[v])) {
+					throw new IOException("Cycle participant " + v + " is on no cycle: " + file);
+				}
+			}
+
+			return new SnapshotFile(voters, alternatives, targets, resolved, votes, invalidVotes, onCycle);
+
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+			/* Cut off or broken counts. */
+			throw new IOException("Broken snapshot: " + file, e);
+		}
+	}
+
+	/** Buffered writing to the channel. */
+	private static final class Output implements AutoCloseable {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		/** Make room for the given number of bytes. */
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) flush();
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) channel.write(buffer);
+			buffer.clear();
+		}
+
+		void putInt(int value) throws IOException {
+			ensure(Integer.BYTES);
+			buffer.putInt(value);
+		}
+
+		void putLong(long value) throws IOException {
+			ensure(Long.BYTES);
+			buffer.putLong(value);
+		}
+
+		void putName(String name) throws IOException {
+			byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+
+			for (int offset = 0; offset < bytes.length; ) {
+				ensure(1);
+				int n = Math.min(buffer.remaining(), bytes.length - offset);
+				buffer.put(bytes, offset, n);
+				offset += n;
+			}
+		}
+
+		/** The first `length` ints of the array, in bulk. */
+		void putInts(int[] values, int length) throws IOException {
+			for (int offset = 0; offset < length; ) {
+				ensure(Integer.BYTES);
+				int n = Math.min(buffer.remaining() / Integer.BYTES, length - offset);
+				buffer.asIntBuffer().put(values, offset, n);
+				buffer.position(buffer.position() + n * Integer.BYTES);
+				offset += n;
+			}
+		}
+
+		@Override public void close() throws IOException {
+			try {
+				flush();
+				channel.force(true); // durable, also as checkpoint (@see EventLog).
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/** Memory mapped reading of the channel, one window after another. */
+	private static final class Input implements AutoCloseable {
+		private final FileChannel channel;
+		private final long size;
+		private MappedByteBuffer window;
+		private long windowStart; // file position of the window
+		private byte[] scratch = new byte[64];
+
+		Input(FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.size = channel.size();
+			map(0);
+		}
+
+		private void map(long position) throws IOException {
+			windowStart = position;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+		}
+
+		/** Make the given number of bytes available in the window.
+		 * @throws IOException if the file ends before. */
+		private void ensure(int bytes) throws IOException {
+			if (window.remaining() >= bytes) return;
+
+			long position = windowStart + window.position();
+			if (size - position < bytes) throw new IOException("Snapshot ends unexpectedly.");
+			map(position);
+		}
+
+		int getInt() throws IOException {
+			ensure(Integer.BYTES);
+			return window.getInt();
+		}
+
+		long getLong() throws IOException {
+			ensure(Long.BYTES);
+			return window.getLong();
+		}
+
+		String getName() throws IOException {
+			int length = getInt();
+			if (length < 0) throw new IOException("Broken name length " + length);
+			if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length << 1)];
+
+			for (int offset = 0; offset < length; ) {
+				ensure(1);
+				int n = Math.min(window.remaining(), length - offset);
+				window.get(scratch, offset, n);
+				offset += n;
+			}
+			return new String(scratch, 0, length, StandardCharsets.UTF_8);
+		}
+
+		/** The next `length` ints, in bulk. */
+		int[] getInts(int length) throws IOException {
+			if (length < 0) throw new IOException("Broken count " + length);
+			int[] values = new int[Math.max(16, length)];
+
+			for (int offset = 0; offset < length; ) {
+				ensure(Integer.BYTES);
+				int n = Math.min(window.remaining() / Integer.BYTES, length - offset);
+				window.asIntBuffer().get(values, offset, n);
+				window.position(window.position() + n * Integer.BYTES);
+				offset += n;
+			}
+			return values;
+		}
+
+		@Override public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
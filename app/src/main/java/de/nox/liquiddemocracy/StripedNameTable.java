@@ -0,0 +1,96 @@
+package de.nox.liquiddemocracy;
+
+import java.util.Arrays;
+
+/** The StripedNameTable.
+ * A NameTable many threads can intern into at once (@see ConcurrentLiquidDemocracy).
+ *
+ * The names are striped by their hash, each stripe is a NameTable under its own lock,
+ * so threads interning different names rarely wait for each other.
+ * The id of a name is its id in its stripe, interleaved with the other stripes: (id in stripe) * stripes + stripe.
+ * So the ids are not given in first-seen order and not quite dense (the stripes fill about evenly),
+ * but they never change either.
+ */
+final class StripedNameTable extends NameTable {
+
+	private final NameTable[] stripes; // each guarded by itself
+	private final int bits; // stripes = 1 << bits
+
+	private String[] merged = new String[16]; // id -> name of the names already merged (@see names), guarded by this
+	private final int[] mergedCounts; // stripe -> its names already merged
+
+	/** Constructor.
+	 * @param stripes (at least) how many threads can intern at the same time without waiting. */
+	StripedNameTable(int stripes) {
+		int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1; // power of two
+		this.bits = Integer.numberOfTrailingZeros(n);
+		this.stripes = new NameTable[n];
+		for (int i = 0; i < n; i++) this.stripes[i] = new NameTable();
+		this.mergedCounts = new int[n];
+	}
+
+	/** Stripe of a name: the high bits of its spread hash (the stripe's own table uses the low bits). */
+	private int stripeOf(String name) {
+		return bits == 0 ? 0 : (name.hashCode() * 0x9E3779B9) >>> (32 - bits);
+	}
+
+	/** Number of interned names (the ids may be larger). */
+	@Override int size() {
+		int size = 0;
+		for (NameTable stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	@Override String name(int id) {
+		NameTable stripe = stripes[id & (stripes.length - 1)];
+		synchronized (stripe) {
+			return stripe.name(id >>> bits);
+		}
+	}
+
+	/** The names by id, valid for all ids given out before (and where no name was given out yet, null).
+	 * The names interned since the last call are merged in, the array is only replaced when growing. */
+	@Override synchronized String[] names() {
+		for (int s = 0; s < stripes.length; s++) {
+			NameTable stripe = stripes[s];
+			synchronized (stripe) {
+				int size = stripe.size();
+				if (size == mergedCounts[s]) continue;
+
+				int last = ((size - 1) << bits) | s;
+				if (last >= merged.length) merged = Arrays.copyOf(merged, Math.max(last + 1, merged.length + (merged.length >> 1) + 1));
+
+				for (int local = mergedCounts[s]; local < size; local++) merged[(local << bits) | s] = stripe.name(local);
+				mergedCounts[s] = size;
+			}
+		}
+		return merged;
+	}
+
+	@Override int find(String name) {
+		int s = stripeOf(name);
+		NameTable stripe = stripes[s];
+		int local;
+		synchronized (stripe) {
+			local = stripe.find(name);
+		}
+		return local < 0 ? -1 : (local << bits) | s;
+	}
+
+	@Override int intern(String name) {
+		int s = stripeOf(name);
+		NameTable stripe = stripes[s];
+		int local;
+		synchronized (stripe) {
+			local = stripe.intern(name);
+		}
+		return (local << bits) | s;
+	}
+
+	/** Nothing to do, each stripe grows by itself. */
+	@Override void ensureCapacity(int capacity) {}
+}
@@ -0,0 +1,179 @@
+package de.nox.liquiddemocracy;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/** The WorkloadGenerator.
+ * Writes synthetic elections in the input format ("{voter} pick {alternative}", "{voter} delegates {voter}"),
+ * as large as needed, reproducible by the seed.
+ *
+ * java -cp build/libs/app.jar de.nox.liquiddemocracy.WorkloadGenerator --voters 10000000 --seed 7 > votes.txt
+ *
+ * Options (with defaults):
+ *   --voters 1000000       voters, each gets one line (in order V0, V1, ...)
+ *   --alternatives 10      alternatives to pick (A0, A1, ...)
+ *   --delegation 0.7       ratio of voters who delegate instead of picking
+ *   --chain 3              mean length of delegation chains (geometric), 1: delegate to anyone
+ *   --cycles 0.01          ratio of voters in delegation cycles (of 2 to 5 voters)
+ *   --revotes 0.1          additional lines per voter, re-voting an earlier voter (not in a cycle)
+ *   --malformed 0          ratio of lines which are invalid (skipped by Main with a warning)
+ *   --seed 1               random seed, the same seed and options give the same bytes
+ *   --output {file}        write to the file instead of System.out
+ *
+ * The lines are written as bytes into one large buffer, there is no String per line.
+ */
+public final class WorkloadGenerator {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	int voters = 1_000_000;
+	int alternatives = 10;
+	double delegation = 0.7;
+	double chain = 3;
+	double cycles = 0.01;
+	double revotes = 0.1;
+	double malformed = 0;
+	long seed = 1;
+
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int length;
+	private OutputStream out;
+	private SplittableRandom random;
+	private long lines;
+
+	public static void main(String[] args) {
+		WorkloadGenerator generator = new WorkloadGenerator();
+
+		String value;
+		if ((value = Main.option(args, "--voters")) != null) generator.voters = Integer.parseInt(value);
+		if ((value = Main.option(args, "--alternatives")) != null) generator.alternatives = Integer.parseInt(value);
+		if ((value = Main.option(args, "--delegation")) != null) generator.delegation = Double.parseDouble(value);
+		if ((value = Main.option(args, "--chain")) != null) generator.chain = Double.parseDouble(value);
+		if ((value = Main.option(args, "--cycles")) != null) generator.cycles = Double.parseDouble(value);
+		if ((value = Main.option(args, "--revotes")) != null) generator.revotes = Double.parseDouble(value);
+		if ((value = Main.option(args, "--malformed")) != null) generator.malformed = Double.parseDouble(value);
+		if ((value = Main.option(args, "--seed")) != null) generator.seed = Long.parseLong(value);
+
+		String output = Main.option(args, "--output");
+		long start = System.nanoTime();
+
+		try (OutputStream out = output != null
+				? Files.newOutputStream(Paths.get(output))
+				: new FileOutputStream(FileDescriptor.out)) {
+
+			long lines = generator.write(out);
+
+			long nanos = Math.max(1, System.nanoTime() - start);
+			System.err.printf("[Generator] %d lines in %d ms (%.1f M lines/s)%n",
+					lines, nanos / 1_000_000, lines * 1e3 / nanos);
+
+		} catch (IOException e) {
+			System.err.println("[Error] Could not write: " + e);
+		}
+	}
+
+	/** Write the whole election.
+	 * @return the number of written lines. */
+	long write(OutputStream out) throws IOException {
+		this.out = out;
+		this.random = new SplittableRandom(seed);
+		this.length = 0;
+		this.lines = 0;
+
+		/* Chance to delegate to the voter before (continuing a chain), instead of anyone before. */
+		double continueChain = chain > 1 ? 1 - 1 / chain : 0;
+
+		/* Cycles are 3.5 voters on average (and take the place of 3.5 single votes). */
+		double cycleStart = cycles / (3.5 - 2.5 * cycles);
+		BitSet inCycle = new BitSet();
+
+		for (int v = 0; v < voters; v++) {
+			if (random.nextDouble() < cycleStart && v + 1 < voters) {
+				/* Cycle: each delegates to the next one, the last one to the first one. */
+				int size = Math.min(2 + random.nextInt(4), voters - v);
+				for (int i = 0; i < size - 1; i++) line(v + i, true, v + i + 1);
+				line(v + size - 1, true, v);
+				inCycle.set(v, v + size);
+
+				v += size - 1;
+				continue;
+			}
+
+			command(v, continueChain);
+
+			/* Someone before changes their mind (not in a cycle, it would be broken). */
+			if (v > 0 && random.nextDouble() < revotes) {
+				int revoter = random.nextInt(v);
+				if (!inCycle.get(revoter)) command(revoter, continueChain);
+			}
+		}
+
+		flush();
+		return lines;
+	}
+
+	/** A random command of the voter: pick, continue the chain in front or delegate to anyone before. */
+	private void command(int v, double continueChain) throws IOException {
+		if (v == 0 || random.nextDouble() >= delegation) {
+			line(v, false, random.nextInt(alternatives));
+		} else if (random.nextDouble() < continueChain) {
+			line(v, true, v - 1);
+		} else {
+			line(v, true, random.nextInt(v));
+		}
+	}
+
+	/** Write one line (or, by the malformed rate, a line without action). */
+	private void line(int voter, boolean delegates, int target) throws IOException {
+		if (length + 64 > buffer.length) flush();
+
+		put('V');
+		put(voter);
+
+		if (malformed > 0 && random.nextDouble() < malformed) {
+			/* No (known) action. */
+			if (random.nextBoolean()) put(" votes A").put(target);
+		} else if (delegates) {
+			put(random.nextBoolean() ? " delegates V" : " delegate V").put(target);
+		} else {
+			put(random.nextBoolean() ? " picks A" : " pick A").put(target);
+		}
+
+		buffer[length++] = '\n';
+		lines++;
+	}
+
+	private WorkloadGenerator put(char c) {
+		buffer[length++] = (byte) c;
+		return this;
+	}
+
+	private WorkloadGenerator put(String ascii) {
+		for (int i = 0, n = ascii.length(); i < n; i++) buffer[length++] = (byte) ascii.charAt(i);
+		return this;
+	}
+
+	/** Decimal digits of a non negative number. */
+	private WorkloadGenerator put(int number) {
+		int digits = 1;
+		for (int n = number; n >= 10; n /= 10) digits++;
+
+		for (int i = length + digits - 1; i >= length; i--) {
+			buffer[i] = (byte) ('0' + number % 10);
+			number /= 10;
+		}
+		length += digits;
+		return this;
+	}
+
+	private void flush() throws IOException {
+		out.write(buffer, 0, length);
+		length = 0;
+	}
+}
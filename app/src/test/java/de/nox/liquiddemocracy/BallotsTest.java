@@ -0,0 +1,196 @@
+package de.nox.liquiddemocracy;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/** The BallotsTest.
+ * Each ballot counts as its own democracy would, while the voters are shared. */
+public class BallotsTest {
+
+	private static void assertSame(LiquidDemocracy expected, LiquidDemocracy ballot) {
+		assertEquals(expected.getVoters(), ballot.getVoters());
+		assertEquals(expected.getResultingChoices(), ballot.getResultingChoices());
+		assertEquals(expected.getResults().choices, ballot.getResults().choices);
+		assertEquals(expected.getResults().invalidVoteCount, ballot.getResults().invalidVoteCount);
+		assertEquals(expected.getCycleParticipants(), ballot.getCycleParticipants());
+		assertEquals(expected.getResultingChoices(), ballot.view().getResultingChoices());
+		assertEquals(expected.getVoters().size(), ballot.view().voterCount());
+	}
+
+	/** Random votes on some ballots, each voter only votes on some of them. */
+	@Test public void testSameAsSeparate() {
+		Random random = new Random(53);
+		Ballots ballots = new Ballots();
+		Map<String, LiquidDemocracy> separate = new HashMap<>();
+
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 5000; i++) {
+				String ballot = "B" + random.nextInt(8);
+				String voter = "V" + random.nextInt(3000);
+				LiquidDemocracy expected = separate.computeIfAbsent(ballot, k -> new LiquidDemocracy());
+
+				if (random.nextInt(4) == 0) {
+					String alternative = ballot + "-A" + random.nextInt(3);
+					ballots.pick(ballot, voter, alternative);
+					expected.pick(voter, alternative);
+				} else {
+					String delegate = "V" + random.nextInt(3000);
+					ballots.delegate(ballot, voter, delegate);
+					expected.delegate(voter, delegate);
+				}
+			}
+
+			Map<String, LiquidDemocracy.Result> results = ballots.getResults();
+			assertEquals(separate.keySet(), results.keySet());
+
+			for (String ballot : separate.keySet()) {
+				assertSame(separate.get(ballot), ballots.ballot(ballot));
+				assertEquals(separate.get(ballot).getResults().choices, results.get(ballot).choices);
+			}
+		}
+	}
+
+	/** Who did not vote on a ballot is not counted there (not even as invalid). */
+	@Test public void testAbsent() throws IOException {
+		Ballots ballots = new Ballots();
+
+		ballots.pick("Lunch", "Alice", "Pizza");
+		ballots.delegate("Lunch", "Bob", "Alice");
+		ballots.pick("Trip", "Carol", "Lake");
+		ballots.delegate("Trip", "Dave", "Eve"); // Eve is a voter of the trip now, invalid.
+
+		LiquidDemocracy lunch = ballots.ballot("Lunch");
+		LiquidDemocracy trip = ballots.ballot("Trip");
+
+		assertEquals(Map.of("Pizza", 2L), lunch.getResults().choices);
+		assertEquals(0, lunch.getResults().invalidVoteCount);
+		assertEquals(2, trip.getResults().invalidVoteCount);
+		assertEquals(Map.of("Alice", "Pizza", "Bob", "Pizza"), lunch.getResultingChoices());
+		assertNull(lunch.resolve("Carol"));
+		assertEquals(List.of(), lunch.delegationPath("Carol"));
+		assertEquals(0, lunch.getVotingPower("Carol"));
+
+		/* Carol joins the lunch. */
+		ballots.delegate("Lunch", "Carol", "Bob");
+		assertEquals(Map.of("Pizza", 3L), lunch.getResults().choices);
+		assertEquals(3, lunch.getVotingPower("Alice"));
+
+		List<String> cursor = new ArrayList<>();
+		for (LiquidDemocracy.ChoiceCursor c = lunch.choices(false); c.next(); ) cursor.add(c.voter());
+		assertEquals(List.of("Alice", "Bob", "Carol"), cursor);
+
+		assertEquals(List.of("Lunch", "Trip"), List.copyOf(ballots.getBallots()));
+		assertEquals(5, ballots.getVoters().size());
+		assertEquals(1, ballots.tally(ballot -> ballot.getTopResults(1)).get("Trip").choices.size());
+
+		try {
+			trip.save(Paths.get("never-written.bin"), false);
+			fail("A ballot can not be saved alone.");
+		} catch (IllegalStateException e) {
+			// expected.
+		}
+	}
+
+	/** Lines prefixed with their ballot. */
+	@Test public void testReadBallotLine() {
+		Main.ReadCommand command = new Main.ReadCommand();
+
+		assertEquals("Lunch", Main.readBallotLine("Lunch: Alice pick Pizza", command));
+		assertEquals("Alice pick Pizza", command.toString());
+
+		assertEquals("Trip 2", Main.readBallotLine(" Trip 2 :Bob  delegates Carol", command));
+		assertEquals("Bob delegate Carol", command.toString());
+
+		assertNull(Main.readBallotLine("Alice pick Pizza", command));
+		assertFalse(command.isValid());
+		assertNull(Main.readBallotLine(": Alice pick Pizza", command));
+	}
+
+	/** Each topic counted as one democracy with everyone's effective choice:
+	 * their own on the topic, otherwise their default delegation, otherwise invalid (only registered). */
+	@Test public void testTopicResults() {
+		Random random = new Random(59);
+		Ballots ballots = new Ballots();
+		Map<String, Map<String, String[]>> own = new HashMap<>(); // topic -> voter -> (pick or delegate, target)
+		Map<String, String> defaults = new HashMap<>();
+
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 3000; i++) {
+				String voter = "V" + random.nextInt(2000);
+				String other = "V" + random.nextInt(2000);
+
+				if (random.nextInt(3) == 0) {
+					ballots.delegateByDefault(voter, other);
+					defaults.put(voter, other);
+				} else {
+					String topic = "T" + random.nextInt(6);
+					Map<String, String[]> choices = own.computeIfAbsent(topic, k -> new HashMap<>());
+					if (random.nextInt(3) == 0) {
+						String alternative = topic + "-A" + random.nextInt(3);
+						ballots.pick(topic, voter, alternative);
+						choices.put(voter, new String[] {"pick", alternative});
+					} else {
+						ballots.delegate(topic, voter, other);
+						choices.put(voter, new String[] {"delegate", other});
+					}
+				}
+			}
+
+			Map<String, LiquidDemocracy.Result> results = ballots.getTopicResults();
+			assertEquals(own.keySet(), results.keySet());
+
+			for (String topic : own.keySet()) {
+				LiquidDemocracy expected = new LiquidDemocracy();
+				for (String voter : ballots.getVoters()) {
+					String[] choice = own.get(topic).get(voter);
+					if (choice != null && choice[0].equals("pick")) expected.pick(voter, choice[1]);
+					else if (choice != null) expected.delegate(voter, choice[1]);
+					else if (defaults.containsKey(voter)) expected.delegate(voter, defaults.get(voter));
+					else expected.pick(voter, null);
+				}
+
+				assertEquals(topic, expected.getResults().choices, results.get(topic).choices);
+				assertEquals(topic, expected.getResults().invalidVoteCount, results.get(topic).invalidVoteCount);
+			}
+		}
+	}
+
+	/** Alice for the lunch, otherwise Bob. */
+	@Test public void testDefaultDelegation() {
+		Ballots ballots = new Ballots();
+
+		ballots.pick("Lunch", "Alice", "Pizza");
+		ballots.pick("Lunch", "Bob", "Salad");
+		ballots.pick("Trip", "Bob", "Lake");
+		ballots.pick("Trip", "Alice", "Mountains");
+
+		ballots.delegate("Lunch", "Carol", "Alice");
+		ballots.delegateByDefault("Carol", "Bob");
+		ballots.delegateByDefault("Dave", "Carol");
+
+		Map<String, LiquidDemocracy.Result> results = ballots.getTopicResults();
+		assertEquals(Map.of("Pizza", 3L, "Salad", 1L), results.get("Lunch").choices);
+		assertEquals(Map.of("Lake", 3L, "Mountains", 1L), results.get("Trip").choices);
+
+		/* The ballots alone are not changed by the defaults. */
+		assertEquals(Map.of("Pizza", 2L, "Salad", 1L), ballots.getResults().get("Lunch").choices);
+
+		/* Default cycle, and taken back. */
+		ballots.delegateByDefault("Bob", "Dave");
+		ballots.delegateByDefault("Carol", null);
+		results = ballots.getTopicResults();
+		assertEquals(Map.of("Pizza", 3L, "Salad", 1L), results.get("Lunch").choices);
+		assertEquals(2, results.get("Trip").invalidVoteCount); // Carol and Dave
+	}
+}
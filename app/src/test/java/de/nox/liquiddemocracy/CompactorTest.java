@@ -0,0 +1,70 @@
+package de.nox.liquiddemocracy;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/** The CompactorTest.
+ * The compacted commands must give the same democracy as all commands. */
+public class CompactorTest {
+
+	/** Many re-votes: one command per voter remains, same results. */
+	@Test public void testSameResults() {
+		Random random = new Random(13);
+		LiquidDemocracy expected = new LiquidDemocracy();
+		Compactor compactor = new Compactor();
+
+		for (int i = 0; i < 20_000; i++) {
+			String voter = "V" + random.nextInt(400);
+			int kind = random.nextInt(10);
+
+			if (kind < 3) {
+				String alternative = "A" + random.nextInt(5);
+				expected.pick(voter, alternative);
+				compactor.pick(voter, alternative);
+			} else if (kind < 9) {
+				String target = "W" + random.nextInt(600); // also voters who never vote themselves
+				expected.delegate(voter, target);
+				compactor.delegate(voter, target);
+			} else {
+				expected.pick(voter, null);
+				compactor.pick(voter, null);
+			}
+		}
+
+		LiquidDemocracy.Batch batch = compactor.toBatch();
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		democracy.applyBatch(batch);
+
+		assertEquals(20_000, compactor.commands());
+		assertEquals(expected.getVoters().size(), batch.size()); // one command per voter
+		assertEquals(expected.getVoters(), democracy.getVoters());
+		assertEquals(expected.getResultingChoices(), democracy.getResultingChoices());
+		assertEquals(expected.getResults().choices, democracy.getResults().choices);
+		assertEquals(expected.getResults().invalidVoteCount, democracy.getResults().invalidVoteCount);
+	}
+
+	/** Only the last valid choice counts, overwritten delegation targets stay registered. */
+	@Test public void testLastChoice() {
+		Compactor compactor = new Compactor();
+
+		compactor.delegate("A", "B"); // B exists from now on
+		compactor.pick("A", "Pizza");
+		compactor.pick("A", null); // does not change the pick
+		compactor.pick("C", null); // only registered
+
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		democracy.applyBatch(compactor.toBatch());
+
+		assertEquals(3, compactor.voters());
+		assertEquals(1l, democracy.getResults().choices.get("Pizza").longValue());
+		assertEquals(2l, democracy.getResults().invalidVoteCount); // B and C
+
+		try {
+			compactor.pick(null, "Pizza");
+			fail("NullPointerException for first voter not thrown.");
+		} catch (NullPointerException e) {}
+	}
+}
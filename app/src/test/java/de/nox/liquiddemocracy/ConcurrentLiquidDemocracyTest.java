@@ -0,0 +1,86 @@
+package de.nox.liquiddemocracy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/** The ConcurrentLiquidDemocracyTest.
+ * Voting from many threads at once must be the same as voting one thread after another. */
+public class ConcurrentLiquidDemocracyTest {
+
+	/** Each thread re-votes its own voters (delegating across all threads' voters). */
+	@Test public void testThreadsLikeSequential() throws InterruptedException {
+		int threads = 8, commands = 20_000;
+		ConcurrentLiquidDemocracy concurrent = new ConcurrentLiquidDemocracy(4);
+		LiquidDemocracy.Batch[] logs = new LiquidDemocracy.Batch[threads];
+		List<Thread> voting = new ArrayList<>();
+
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			logs[t] = new LiquidDemocracy.Batch(commands);
+
+			voting.add(new Thread(() -> {
+				Random random = new Random(thread);
+				for (int i = 0; i < commands; i++) {
+					String voter = "T" + thread + "V" + random.nextInt(200);
+					String target = "T" + random.nextInt(threads) + "V" + random.nextInt(200);
+					String alternative = "A" + random.nextInt(4);
+
+					switch (random.nextInt(5)) {
+						case 0:
+							concurrent.pick(voter, alternative);
+							logs[thread].pick(voter, alternative);
+							break;
+						case 1:
+							concurrent.pick(voter, null);
+							logs[thread].pick(voter, null);
+							break;
+						default:
+							concurrent.delegate(voter, target);
+							logs[thread].delegate(voter, target);
+							break;
+					}
+
+					/* Reads in between. */
+					if (i % 5000 == 0) concurrent.getResults();
+				}
+			}));
+		}
+
+		for (Thread thread : voting) thread.start();
+		for (Thread thread : voting) thread.join();
+
+		/* One thread after another. */
+		LiquidDemocracy expected = new LiquidDemocracy();
+		for (LiquidDemocracy.Batch log : logs) expected.applyBatch(log);
+
+		assertEquals(expected.getVoters(), concurrent.getVoters());
+		assertEquals(expected.getAlternatives(), concurrent.getAlternatives());
+		assertEquals(expected.getResultingChoices(), concurrent.getResultingChoices());
+		assertEquals(expected.getResultingChoices(), concurrent.view().getResultingChoices());
+		assertEquals(expected.getCycleParticipants(), concurrent.getCycleParticipants());
+		assertEquals(expected.getResults().choices, concurrent.getResults().choices);
+		assertEquals(expected.getResults().invalidVoteCount, concurrent.getResults().invalidVoteCount);
+	}
+
+	/** Same rules as the LiquidDemocracy: last choice counts, null voters are refused. */
+	@Test public void testLastChoice() {
+		ConcurrentLiquidDemocracy democracy = new ConcurrentLiquidDemocracy();
+
+		democracy.pick("A", "Pizza");
+		democracy.delegate("B", "A");
+		democracy.pick("A", "Salad");
+
+		assertEquals(2l, democracy.getResults().choices.get("Salad").longValue());
+		assertEquals(null, democracy.getResults().choices.get("Pizza"));
+
+		try {
+			democracy.delegate(null, "A");
+			fail("NullPointerException for first voter not thrown.");
+		} catch (NullPointerException e) {}
+	}
+}
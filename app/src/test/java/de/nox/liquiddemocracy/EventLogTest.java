@@ -0,0 +1,134 @@
+package de.nox.liquiddemocracy;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** The EventLogTest.
+ * A recovered democracy must be the same as the one which voted the committed commands. */
+public class EventLogTest {
+
+	private static Path tempDirectory() throws IOException {
+		Path directory = Files.createTempDirectory("journal");
+		directory.toFile().deleteOnExit();
+		return directory;
+	}
+
+	private static LiquidDemocracy.Batch votes(Random random, int commands) {
+		LiquidDemocracy.Batch batch = new LiquidDemocracy.Batch();
+
+		for (int i = 0; i < commands; i++) {
+			String voter = "V" + random.nextInt(300);
+			switch (random.nextInt(4)) {
+				case 0: batch.pick(voter, "A\u00e4" + random.nextInt(5)); break;
+				case 1: batch.pick(voter, null); break;
+				default: batch.delegate(voter, "V" + random.nextInt(300)); break;
+			}
+		}
+		return batch;
+	}
+
+	private static void assertSame(LiquidDemocracy expected, LiquidDemocracy actual) {
+		assertEquals(expected.getVoters(), actual.getVoters());
+		assertEquals(expected.getResultingChoices(), actual.getResultingChoices());
+		assertEquals(expected.getResults().choices, actual.getResults().choices);
+		assertEquals(expected.getResults().invalidVoteCount, actual.getResults().invalidVoteCount);
+	}
+
+	/** Replay of the whole log, and of the tail after checkpoints. */
+	@Test public void testRecover() throws IOException {
+		Random random = new Random(17);
+		Path directory = tempDirectory();
+		LiquidDemocracy expected = new LiquidDemocracy();
+
+		/* A small interval, so checkpoints are taken in between. */
+		int checkpoints = 0;
+		try (EventLog log = new EventLog(directory, 4096)) {
+			LiquidDemocracy democracy = log.recover();
+
+			for (int i = 0; i < 50; i++) {
+				LiquidDemocracy.Batch batch = votes(random, 100);
+				log.append(batch);
+				log.commit();
+				democracy.applyBatch(batch);
+				expected.applyBatch(batch);
+				if (log.checkpointIfDue(democracy)) checkpoints++;
+			}
+		}
+		assertTrue(checkpoints > 1);
+
+		try (EventLog log = new EventLog(directory, 4096)) {
+			assertSame(expected, log.recover());
+		}
+
+		/* Only the latest checkpoint remains. */
+		assertEquals(1, directory.toFile().list((dir, name) -> name.startsWith("checkpoint-")).length);
+	}
+
+	/** Group commit: all appended commands are committed with one force. */
+	@Test public void testGroupCommit() throws IOException {
+		Random random = new Random(19);
+		Path directory = tempDirectory();
+		LiquidDemocracy expected = new LiquidDemocracy();
+
+		try (EventLog log = new EventLog(directory)) {
+			for (int i = 0; i < 10; i++) {
+				LiquidDemocracy.Batch batch = votes(random, 10);
+				log.append(batch);
+				expected.applyBatch(batch);
+			}
+			log.commit();
+			log.commit(); // nothing left.
+
+			assertTrue(log.report(), log.report().startsWith("[Journal] 100 commands in 1 commits"));
+		}
+
+		try (EventLog log = new EventLog(directory)) {
+			assertSame(expected, log.recover());
+		}
+	}
+
+	/** A torn frame at the end is cut off, the log goes on after the last complete frame. */
+	@Test public void testTornFrame() throws IOException {
+		Random random = new Random(23);
+		Path directory = tempDirectory();
+		LiquidDemocracy expected = new LiquidDemocracy();
+
+		try (EventLog log = new EventLog(directory)) {
+			LiquidDemocracy.Batch batch = votes(random, 200);
+			log.append(batch);
+			expected.applyBatch(batch);
+		}
+
+		long committed = Files.size(directory.resolve(EventLog.LOG_FILE));
+
+		/* Crash while writing the next frame. */
+		try (EventLog log = new EventLog(directory)) {
+			log.append(votes(random, 200));
+		}
+		try (FileChannel file = FileChannel.open(directory.resolve(EventLog.LOG_FILE), StandardOpenOption.WRITE)) {
+			file.truncate(committed + 100);
+		}
+
+		try (EventLog log = new EventLog(directory)) {
+			LiquidDemocracy recovered = log.recover();
+			assertSame(expected, recovered);
+			assertEquals(committed, log.size());
+
+			LiquidDemocracy.Batch batch = votes(random, 50);
+			log.append(batch);
+			expected.applyBatch(batch);
+		}
+
+		try (EventLog log = new EventLog(directory)) {
+			assertSame(expected, log.recover());
+		}
+	}
+}
@@ -1,9 +1,16 @@
 package de.nox.liquiddemocracy;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /** The LiquidDemocracyTest.
@@ -261,4 +268,517 @@ public class LiquidDemocracyTest {
 		assertEquals("#Invalid (now valid)", 0, results.invalidVoteCount); // no invalid
 		assertEquals("#Apple (now valid)", (long) votersCount, results.choices.get(pick).longValue()); // all valid
 	}
+
+	/** Cycle participants are reported, voters only delegating into a cycle are not. */
+	@Test public void testCycleParticipants() {
+		LiquidDemocracy democracy = new LiquidDemocracy();
+
+		democracy.pick("Alice", "Pizza");
+		democracy.delegate("Bob", "Alice");
+		democracy.delegate("Dave", "Eve"); // into the cycle
+		democracy.delegate("Eve", "Mallory");
+		democracy.delegate("Mallory", "Trent");
+		democracy.delegate("Trent", "Eve");
+		democracy.delegate("Self", "Self"); // own cycle
+		democracy.delegate("Peggy", "Dave"); // into the cycle, two steps
+
+		Set<String> cycling = democracy.getCycleParticipants();
+
+		assertEquals(4, cycling.size());
+		assertTrue(cycling.contains("Eve"));
+		assertTrue(cycling.contains("Mallory"));
+		assertTrue(cycling.contains("Trent"));
+		assertTrue(cycling.contains("Self"));
+
+		assertFalse(cycling.contains("Dave")); // invalid, but not part of it
+		assertFalse(cycling.contains("Peggy"));
+		assertEquals(6l, democracy.getResults().invalidVoteCount);
+
+		// break the cycle.
+		democracy.pick("Mallory", "Salad");
+
+		cycling = democracy.getCycleParticipants();
+
+		assertEquals(1, cycling.size());
+		assertTrue(cycling.contains("Self"));
+		assertEquals(5l, democracy.getResults().choices.get("Salad").longValue());
+	}
+
+	/** Random votes, re-votes and delegations, asking for results in between.
+	 * The (incrementally updated) results must match a freshly built democracy. */
+	@Test public void testIncrementalMatchesFresh() {
+		Random random = new Random(42);
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		List<String[]> log = new ArrayList<>();
+
+		int voters = 200;
+		String[] alternatives = {"Pizza", "Salad", "Soup"};
+
+		for (int round = 0; round < 50; round++) {
+			for (int i = 0; i < 40; i++) {
+				String voter = "V" + random.nextInt(voters);
+				String[] command = random.nextInt(3) == 0
+					? new String[]{voter, "pick", alternatives[random.nextInt(alternatives.length)]}
+					: new String[]{voter, "delegate", "V" + random.nextInt(voters)};
+
+				log.add(command);
+				if (command[1].equals("pick")) democracy.pick(command[0], command[2]);
+				else democracy.delegate(command[0], command[2]);
+			}
+
+			LiquidDemocracy fresh = new LiquidDemocracy();
+			for (String[] command : log) {
+				if (command[1].equals("pick")) fresh.pick(command[0], command[2]);
+				else fresh.delegate(command[0], command[2]);
+			}
+
+			LiquidDemocracy.Result expected = fresh.getResults();
+			LiquidDemocracy.Result results = democracy.getResults();
+
+			assertEquals("round " + round, expected.choices, results.choices);
+			assertEquals("round " + round, expected.invalidVoteCount, results.invalidVoteCount);
+			assertEquals("round " + round, fresh.getResultingChoices(), democracy.getResultingChoices());
+			assertEquals("round " + round, fresh.getCycleParticipants(), democracy.getCycleParticipants());
+		}
+	}
+
+	/** The live tally (votes and invalid votes, kept up to date while voting) is a fresh recount,
+	 * with re-votes, invalid votes and cycles deliberately closed and broken again in between.
+	 * Asked in between for single voters (partly calculated), the top or all results. */
+	@Test public void testLiveCountsMatchRecount() {
+		Random random = new Random(67);
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		List<String[]> log = new ArrayList<>();
+		int closed = 0, broken = 0;
+
+		for (int round = 0; round < 300; round++) {
+			for (int i = 1 + random.nextInt(4); i > 0; i--) {
+				String voter = "V" + random.nextInt(30);
+				String[] command;
+
+				switch (random.nextInt(6)) {
+				case 0: // close a cycle: the end of the voter's chain delegates back to them.
+					List<String> path = democracy.delegationPath(voter);
+					if (path.size() < 2 || path.get(0).equals(path.get(path.size() - 1))) continue;
+					command = new String[]{path.get(path.size() - 1), "delegate", voter};
+					closed++;
+					break;
+				case 1: // break a cycle: one of its voters picks.
+					List<String> participants = new ArrayList<>(democracy.getCycleParticipants());
+					if (participants.isEmpty()) continue;
+					command = new String[]{participants.get(random.nextInt(participants.size())), "pick", "A" + random.nextInt(3)};
+					broken++;
+					break;
+				case 2:
+					command = new String[]{voter, "pick", random.nextInt(5) == 0 ? null : "A" + random.nextInt(3)};
+					break;
+				default:
+					command = new String[]{voter, "delegate", random.nextInt(8) == 0 ? null : "V" + random.nextInt(30)};
+				}
+
+				log.add(command);
+				if (command[1].equals("pick")) democracy.pick(command[0], command[2]);
+				else democracy.delegate(command[0], command[2]);
+			}
+
+			/* Partly calculated, all calculated, or only the leading ones. */
+			int ask = random.nextInt(3);
+			if (ask == 0) democracy.resolve("V" + random.nextInt(30));
+			if (ask == 1) democracy.getResults();
+
+			LiquidDemocracy fresh = new LiquidDemocracy();
+			for (String[] command : log) {
+				if (command[1].equals("pick")) fresh.pick(command[0], command[2]);
+				else fresh.delegate(command[0], command[2]);
+			}
+
+			if (ask == 2) {
+				assertEquals("round " + round, fresh.getTopResults(2).choices, democracy.getTopResults(2).choices);
+			}
+			assertEquals("round " + round, fresh.getResults().choices, democracy.getResults().choices);
+			assertEquals("round " + round, fresh.getResults().invalidVoteCount, democracy.getResults().invalidVoteCount);
+		}
+
+		assertTrue(closed > 10 && broken > 10);
+	}
+
+	/** Calculating in parallel gives the same as calculating one after another.
+	 * Large enough to be calculated in parallel: chains, fan-in and cycles. */
+	@Test public void testParallelMatchesSequential() {
+		Random random = new Random(7);
+		LiquidDemocracy sequential = new LiquidDemocracy();
+		LiquidDemocracy parallel = new LiquidDemocracy();
+		parallel.setParallel(true);
+
+		int voters = 100_000;
+
+		for (int i = 0; i < voters; i++) {
+			String voter = "V" + i;
+			int kind = random.nextInt(10);
+
+			if (kind == 0) {
+				String alternative = "A" + random.nextInt(5);
+				sequential.pick(voter, alternative);
+				parallel.pick(voter, alternative);
+			} else if (kind < 8) {
+				String target = "V" + Math.max(0, i - 1 - random.nextInt(3)); // long chains
+				sequential.delegate(voter, target);
+				parallel.delegate(voter, target);
+			} else {
+				String target = "V" + random.nextInt(voters); // anywhere, also cycles
+				sequential.delegate(voter, target);
+				parallel.delegate(voter, target);
+			}
+		}
+
+		assertSameResults(sequential, parallel);
+
+		// many late changes, calculated in parallel again.
+		for (int i = 0; i < voters / 2; i++) {
+			String voter = "V" + random.nextInt(voters);
+			String target = "V" + random.nextInt(voters);
+			sequential.delegate(voter, target);
+			parallel.delegate(voter, target);
+		}
+
+		assertSameResults(sequential, parallel);
+	}
+
+	private static void assertSameResults(LiquidDemocracy expected, LiquidDemocracy actual) {
+		LiquidDemocracy.Result expectedResults = expected.getResults();
+		LiquidDemocracy.Result actualResults = actual.getResults();
+
+		assertEquals(expectedResults.choices, actualResults.choices);
+		assertEquals(expectedResults.invalidVoteCount, actualResults.invalidVoteCount);
+		assertEquals(expected.getResultingChoices(), actual.getResultingChoices());
+		assertEquals(expected.getCycleParticipants(), actual.getCycleParticipants());
+	}
+
+	/** A batch gives the same as calling pick and delegate one after another. */
+	@Test public void testApplyBatch() {
+		Random random = new Random(11);
+		LiquidDemocracy expected = new LiquidDemocracy();
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		LiquidDemocracy.Batch batch = new LiquidDemocracy.Batch(4);
+
+		for (int round = 0; round < 5; round++) {
+			batch.clear();
+
+			for (int i = 0; i < 2000; i++) {
+				String voter = "V" + random.nextInt(300);
+				int kind = random.nextInt(10);
+
+				if (kind < 3) {
+					String alternative = "A" + random.nextInt(4);
+					expected.pick(voter, alternative);
+					batch.pick(voter, alternative);
+				} else if (kind < 9) {
+					String target = "V" + random.nextInt(300);
+					expected.delegate(voter, target);
+					batch.delegate(voter, target);
+				} else {
+					expected.delegate(voter, null); // only registered.
+					batch.delegate(voter, null);
+				}
+			}
+
+			assertEquals(2000, batch.size());
+			democracy.applyBatch(batch);
+
+			assertEquals(expected.getVoters(), democracy.getVoters());
+			assertEquals(expected.getAlternatives(), democracy.getAlternatives());
+			assertEquals(expected.getResultingChoices(), democracy.getResultingChoices());
+			assertEquals(expected.getResults().invalidVoteCount, democracy.getResults().invalidVoteCount);
+		}
+
+		// unacceptable command, as with pick and delegate.
+		try {
+			batch.pick(null, "Pizza");
+			fail("NullPointerException for first voter not thrown.");
+		} catch (NullPointerException e) {}
+	}
+
+	/** Many small batches of new voters: the arrays grow geometrically, not by each batch (linear, not quadratic). */
+	@Test(timeout = 10_000) public void testApplyBatchesGrowLinearly() {
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		LiquidDemocracy.Batch batch = new LiquidDemocracy.Batch(16);
+		int voters = 500_000;
+
+		for (int v = 0; v < voters; ) {
+			batch.clear();
+			for (int i = 0; i < 16; i++, v++) batch.pick("V" + v, "A" + (v & 3));
+			democracy.applyBatch(batch);
+		}
+
+		assertEquals(voters, democracy.getVoters().size());
+		assertEquals(voters / 4, (long) democracy.getResults().choices.get("A0"));
+	}
+
+	/** A batch keeps the voters in first-seen order, as one by one (each voter before its target). */
+	@Test public void testApplyBatchOrder() {
+		LiquidDemocracy expected = new LiquidDemocracy();
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		LiquidDemocracy.Batch batch = new LiquidDemocracy.Batch();
+
+		String[][] commands = {{"Bob", "Alice"}, {"Carol", "Dave"}, {"Alice", null}, {"Eve", "Bob"}, {"Dave", "Frank"}};
+		for (String[] command : commands) {
+			expected.delegate(command[0], command[1]);
+			batch.delegate(command[0], command[1]);
+		}
+		expected.pick("Frank", "Pizza");
+		batch.pick("Frank", "Pizza");
+		democracy.applyBatch(batch);
+
+		assertEquals(cursorOrder(expected), cursorOrder(democracy));
+		assertEquals(List.of("Bob", "Alice", "Carol", "Dave", "Eve", "Frank"), cursorOrder(democracy));
+		assertEquals(new ArrayList<>(expected.getTopDelegates(3).keySet()),
+				new ArrayList<>(democracy.getTopDelegates(3).keySet()));
+	}
+
+	private static List<String> cursorOrder(LiquidDemocracy democracy) {
+		List<String> voters = new ArrayList<>();
+		for (LiquidDemocracy.ChoiceCursor c = democracy.choices(false); c.next(); ) voters.add(c.voter());
+		return voters;
+	}
+
+	/** A view keeps the results of its time, later views share the unchanged pages. */
+	@Test public void testView() {
+		Random random = new Random(29);
+		LiquidDemocracy democracy = new LiquidDemocracy();
+
+		for (int v = 0; v < 20_000; v++) {
+			if (v % 10 == 0) democracy.pick("V" + v, "A" + random.nextInt(5));
+			else democracy.delegate("V" + v, "V" + (v / 10 * 10)); // small trees
+		}
+
+		LiquidDemocracy.View first = democracy.view();
+		Map<String, String> choices = democracy.getResultingChoices();
+		LiquidDemocracy.Result results = democracy.getResults();
+
+		/* Change only the first tree, add a new voter. */
+		democracy.pick("V0", "Changed");
+		democracy.pick("New", "A0");
+
+		LiquidDemocracy.View second = democracy.view();
+
+		assertEquals(choices, first.getResultingChoices());
+		assertEquals(results.choices, first.getResults().choices);
+		assertEquals(20_000, first.voterCount());
+
+		assertEquals(democracy.getResultingChoices(), second.getResultingChoices());
+		assertEquals(democracy.getResults().choices, second.getResults().choices);
+		assertEquals(10l, second.getResults().choices.get("Changed").longValue());
+
+		/* Copied: the changed first page and the last (new voter), shared: the rest. */
+		assertFalse(first.pages[0] == second.pages[0]);
+		assertTrue(first.pages[1] == second.pages[1]);
+		assertFalse(first.pages[first.pages.length - 1] == second.pages[second.pages.length - 1]);
+	}
+
+	/** The top k are the first k of all results sorted by votes (ties: first appearance). */
+	@Test public void testTopResults() {
+		Random random = new Random(37);
+		LiquidDemocracy democracy = new LiquidDemocracy();
+
+		for (int i = 0; i < 20_000; i++) {
+			democracy.pick("V" + i, "A" + (int) Math.sqrt(random.nextInt(250_000))); // many ties
+		}
+
+		/* First appearance of each alternative (by the voter who picked it first). */
+		Map<String, String> choices = democracy.getResultingChoices();
+		Map<String, Integer> first = new HashMap<>();
+		for (int i = 0; i < 20_000; i++) first.putIfAbsent(choices.get("V" + i), i);
+
+		Map<String, Long> all = democracy.getResults().choices;
+		List<String> alternatives = new ArrayList<>(all.keySet());
+		alternatives.sort((a, b) -> all.get(a).equals(all.get(b))
+				? Integer.compare(first.get(a), first.get(b))
+				: Long.compare(all.get(b), all.get(a)));
+
+		for (int k : new int[] {0, 1, 10, 499, 500, 1000}) {
+			LiquidDemocracy.Result top = democracy.getTopResults(k);
+
+			assertEquals(alternatives.subList(0, Math.min(k, alternatives.size())), new ArrayList<>(top.choices.keySet()));
+			for (String a : top.choices.keySet()) assertEquals(all.get(a), top.choices.get(a));
+			assertEquals(democracy.getResults().invalidVoteCount, top.invalidVoteCount);
+		}
+	}
+
+	/** Paging through all (or the invalid) voters gives the resulting choices, also with votes in between. */
+	@Test public void testChoicesPages() {
+		Random random = new Random(41);
+		LiquidDemocracy democracy = new LiquidDemocracy();
+
+		for (int i = 0; i < 5000; i++) {
+			String voter = "V" + random.nextInt(3000);
+			if (random.nextInt(4) == 0) democracy.pick(voter, "A" + random.nextInt(3));
+			else democracy.delegate(voter, "V" + random.nextInt(3000));
+		}
+
+		for (boolean invalidOnly : new boolean[] {false, true}) {
+			Map<String, String> expected = new HashMap<>(democracy.getResultingChoices());
+			if (invalidOnly) expected.values().removeIf(choice -> choice != null);
+
+			Map<String, String> paged = new HashMap<>();
+			int pages = 0;
+			for (int next = 0; next >= 0; pages++) {
+				LiquidDemocracy.Page page = democracy.getChoicesPage(next, 100, invalidOnly);
+				assertTrue(page.choices.size() <= 100);
+				paged.putAll(page.choices);
+				next = page.next;
+			}
+
+			assertEquals(expected, paged);
+			assertEquals((expected.size() + 99) / 100, pages);
+		}
+
+		/* A voter who becomes invalid after their page was read stays there, new voters come at the end. */
+		LiquidDemocracy.ChoiceCursor cursor = democracy.choices(false);
+		assertTrue(cursor.next());
+		String first = cursor.voter();
+
+		democracy.pick(first, null); // no change, invalid choices do not overwrite
+		democracy.pick("Newcomer", "A0");
+
+		String last = null;
+		int count = 1;
+		while (cursor.next()) {
+			last = cursor.voter();
+			count++;
+		}
+		assertEquals("Newcomer", last);
+		assertEquals(democracy.getVoters().size(), count);
+	}
+
+	/** Single voters resolved (between votes) as if all were calculated. */
+	@Test public void testResolve() {
+		Random random = new Random(43);
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		LiquidDemocracy expected = new LiquidDemocracy();
+
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < 500; i++) {
+				String voter = "V" + random.nextInt(1000);
+				if (random.nextInt(4) == 0) {
+					String alternative = "A" + random.nextInt(3);
+					democracy.pick(voter, alternative);
+					expected.pick(voter, alternative);
+				} else {
+					String target = "V" + random.nextInt(1000);
+					democracy.delegate(voter, target);
+					expected.delegate(voter, target);
+				}
+			}
+
+			Map<String, String> choices = expected.getResultingChoices();
+			for (int i = 0; i < 200; i++) {
+				String voter = "V" + random.nextInt(1000);
+				assertEquals(choices.get(voter), democracy.resolve(voter));
+			}
+		}
+
+		assertEquals(null, democracy.resolve("Nobody"));
+		assertEquals(expected.getResults().choices, democracy.getResults().choices);
+		assertEquals(expected.getResults().invalidVoteCount, democracy.getResults().invalidVoteCount);
+		assertEquals(expected.getCycleParticipants(), democracy.getCycleParticipants());
+	}
+
+	/** The chain up to the picking voter, or into a cycle. */
+	@Test public void testDelegationPath() {
+		LiquidDemocracy democracy = new LiquidDemocracy();
+
+		democracy.delegate("Bob", "Carol");
+		democracy.pick("Carol", "Salad");
+		democracy.delegate("Dave", "Eve");
+		democracy.delegate("Eve", "Mallory");
+		democracy.delegate("Mallory", "Eve");
+
+		assertEquals(List.of("Bob", "Carol"), democracy.delegationPath("Bob"));
+		assertEquals(List.of("Carol"), democracy.delegationPath("Carol"));
+		assertEquals(List.of("Dave", "Eve", "Mallory", "Eve"), democracy.delegationPath("Dave"));
+		assertEquals(List.of(), democracy.delegationPath("Nobody"));
+		assertEquals("Salad", democracy.resolve("Bob"));
+		assertEquals(null, democracy.resolve("Dave"));
+	}
+
+	/** Voting power by walking each valid voter's chain (voter -> delegate, absent if picked). */
+	private static Map<String, Long> votingPowers(LiquidDemocracy democracy, Map<String, String> delegations) {
+		Map<String, Long> powers = new HashMap<>();
+		democracy.getResultingChoices().forEach((voter, choice) -> {
+			for (String v = voter; choice != null && v != null; v = delegations.get(v)) powers.merge(v, 1L, Long::sum);
+		});
+		return powers;
+	}
+
+	/** The kept voting power is the walked one, with cycles closed and broken again,
+	 * asked between single votes (kept on each vote) and after bulk votes (counted again). */
+	@Test public void testVotingPower() {
+		Random random = new Random(47);
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		Map<String, String> delegations = new HashMap<>();
+
+		for (int round = 0; round < 300; round++) {
+			int votes = round % 50 == 0 ? 2000 : 1 + random.nextInt(5);
+			for (int i = 0; i < votes; i++) {
+				String voter = "V" + random.nextInt(300);
+				if (random.nextInt(5) == 0) {
+					democracy.pick(voter, "A" + random.nextInt(3));
+					delegations.remove(voter);
+				} else {
+					String delegate = "V" + random.nextInt(300);
+					democracy.delegate(voter, delegate);
+					delegations.put(voter, delegate);
+				}
+			}
+
+			Map<String, Long> powers = votingPowers(democracy, delegations);
+			for (String voter : democracy.getVoters()) {
+				assertEquals(voter, powers.getOrDefault(voter, 0L).longValue(), democracy.getVotingPower(voter));
+			}
+		}
+		assertEquals(0, democracy.getVotingPower("Nobody"));
+	}
+
+	/** The delegates with most power, ties by first appearance, no one without delegations. */
+	@Test public void testTopDelegates() {
+		LiquidDemocracy democracy = new LiquidDemocracy();
+
+		democracy.pick("Carol", "Salad");
+		democracy.pick("Alice", "Pizza");
+		democracy.delegate("Bob", "Alice");
+		democracy.delegate("Dave", "Carol");
+		democracy.delegate("Eve", "Dave");
+		democracy.delegate("Frank", "Alice");
+		democracy.delegate("Mallory", "Trudy");
+		democracy.delegate("Trudy", "Mallory");
+		democracy.delegate("Oscar", "Trudy");
+
+		Map<String, Long> top = democracy.getTopDelegates(3);
+		assertEquals(List.of("Carol", "Alice", "Dave"), new ArrayList<>(top.keySet()));
+		assertEquals(List.of(3L, 3L, 2L), new ArrayList<>(top.values()));
+
+		/* Alice's delegators go to the cycle, it is invalid. */
+		democracy.delegate("Alice", "Oscar");
+		assertEquals(Map.of("Carol", 3L, "Dave", 2L), democracy.getTopDelegates(10));
+		assertEquals(0, democracy.getVotingPower("Alice"));
+
+		/* Broken again. */
+		democracy.pick("Trudy", "Pizza");
+		assertEquals(6, democracy.getVotingPower("Trudy"));
+		assertEquals(List.of("Trudy", "Oscar", "Carol"), new ArrayList<>(democracy.getTopDelegates(3).keySet()));
+	}
+
+	/** A long chain, voted one by one while asked: the counts stay linear (stale and counted again). */
+	@Test(timeout = 10_000) public void testVotingPowerLongChain() {
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		democracy.pick("V0", "A");
+		assertEquals(1, democracy.getVotingPower("V0"));
+
+		for (int i = 1; i < 200_000; i++) democracy.delegate("V" + i, "V" + (i - 1));
+
+		assertEquals(200_000, democracy.getVotingPower("V0"));
+		assertEquals(1, democracy.getVotingPower("V199999"));
+		democracy.delegate("V0", "V199999");
+		assertEquals(0, democracy.getVotingPower("V0"));
+	}
 }
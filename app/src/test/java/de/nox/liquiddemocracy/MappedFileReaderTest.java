@@ -0,0 +1,95 @@
+package de.nox.liquiddemocracy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** The MappedFileReaderTest.
+ * Reading a file in (tiny) chunks must be the same as reading it line by line. */
+public class MappedFileReaderTest {
+
+	/** Read the text line by line, as Main does on System.in. */
+	private static LiquidDemocracy readByLines(String text) {
+		LiquidDemocracy.Batch batch = new LiquidDemocracy.Batch();
+		Main.ReadCommand command = new Main.ReadCommand();
+
+		for (String line : text.split("\r\n|\r|\n")) {
+			if (line.length() == 0) break; // empty line ends the input.
+
+			Main.readLine(line, command);
+			if (command.isValid()) Main.vote(batch, command);
+		}
+
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		democracy.applyBatch(batch);
+		return democracy;
+	}
+
+	private static Path write(String text) throws IOException {
+		Path file = Files.createTempFile("votes", ".txt");
+		file.toFile().deleteOnExit();
+		Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	/** Many re-votes, all kinds of line ends, chunks of a few bytes: the last choice counts. */
+	@Test public void testChunksInOrder() throws IOException {
+		Random random = new Random(3);
+		String[] ends = {"\n", "\r\n", "\r"};
+		StringBuilder text = new StringBuilder();
+
+		for (int i = 0; i < 5000; i++) {
+			String voter = "V" + random.nextInt(300);
+			text.append(random.nextBoolean()
+					? voter + " pick \u00c4" + random.nextInt(4) // also multi byte characters
+					: voter + " delegates V" + random.nextInt(300));
+			text.append(ends[random.nextInt(ends.length)]);
+		}
+
+		Path file = write(text.toString());
+		LiquidDemocracy expected = readByLines(text.toString());
+
+		for (int chunkSize : new int[]{1, 7, 100, 1 << 20}) {
+			LiquidDemocracy democracy = new LiquidDemocracy();
+			boolean warned = MappedFileReader.read(file, democracy::applyBatch, chunkSize, 4);
+
+			assertFalse(warned);
+			assertEquals(expected.getResultingChoices(), democracy.getResultingChoices());
+			assertEquals(expected.getResults().choices, democracy.getResults().choices);
+			assertEquals(expected.getResults().invalidVoteCount, democracy.getResults().invalidVoteCount);
+		}
+	}
+
+	/** Invalid lines are warned about, an empty line ends the input (also in a later chunk). */
+	@Test public void testWarningsAndEmptyLine() throws IOException {
+		Path file = write("Alice pick Pizza\nDad\nBob delegate Alice\n\nCarol pick Salad\n");
+
+		final PrintStream stderr = System.err;
+		final ByteArrayOutputStream monitorError = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(monitorError));
+
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		boolean warned;
+		try {
+			warned = MappedFileReader.read(file, democracy::applyBatch, 3, 2);
+		} finally {
+			System.setErr(stderr);
+		}
+
+		assertTrue(warned);
+		assertTrue(monitorError.toString().contains("(\"Dad\")"));
+
+		assertEquals(2l, democracy.getResults().choices.get("Pizza").longValue());
+		assertEquals(null, democracy.getResults().choices.get("Salad")); // after the empty line
+		assertEquals(2, democracy.getVoters().size());
+	}
+}
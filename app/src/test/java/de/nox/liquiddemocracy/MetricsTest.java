@@ -0,0 +1,132 @@
+package de.nox.liquiddemocracy;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** The MetricsTest.
+ * The counters and gauges are what the democracy says, also over JMX. */
+public class MetricsTest {
+
+	/** Number of cycles among the participants (voter -> delegate). */
+	private static int cycles(Set<String> participants, Map<String, String> delegations) {
+		Set<String> seen = new HashSet<>();
+		int cycles = 0;
+		for (String voter : participants) {
+			if (seen.contains(voter)) continue;
+			cycles++;
+			for (String v = voter; seen.add(v); v = delegations.get(v));
+		}
+		return cycles;
+	}
+
+	/** Random votes, checked between (also with cycles broken and closed again). */
+	@Test public void testGauges() {
+		Random random = new Random(61);
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		Metrics metrics = democracy.metrics();
+		Map<String, String> delegations = new HashMap<>();
+		int commands = 0;
+
+		for (int round = 0; round < 50; round++) {
+			for (int i = 0; i < 200; i++, commands++) {
+				String voter = "V" + random.nextInt(400);
+				if (random.nextInt(4) == 0) {
+					democracy.pick(voter, "A" + random.nextInt(5));
+					delegations.remove(voter);
+				} else {
+					String delegate = "V" + random.nextInt(400);
+					democracy.delegate(voter, delegate);
+					delegations.put(voter, delegate);
+				}
+			}
+
+			Set<String> participants = democracy.getCycleParticipants();
+
+			assertEquals(commands, metrics.getCommandsAccepted());
+			assertEquals(democracy.getVoters().size(), metrics.getVoters());
+			assertEquals(democracy.getAlternatives().size(), metrics.getAlternatives());
+			assertEquals(delegations.size(), metrics.getDelegations());
+			assertEquals(participants.size(), metrics.getCycleParticipants());
+			assertEquals(cycles(participants, delegations), metrics.getCycles());
+		}
+
+		assertTrue(metrics.getResolutions() >= 50);
+		assertTrue(metrics.getResolvedVoters() >= democracy.getVoters().size());
+		assertTrue(metrics.getLastResolutionNanos() > 0);
+	}
+
+	/** The longest chain, also calculated in pieces. */
+	@Test public void testMaxChainDepth() {
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		Metrics metrics = democracy.metrics();
+
+		democracy.pick("V0", "A");
+		for (int i = 1; i < 100; i++) {
+			democracy.delegate("V" + i, "V" + (i - 1));
+			if (i % 10 == 0) democracy.getResults();
+		}
+		democracy.getResults();
+		assertEquals(100, metrics.getMaxChainDepth());
+
+		/* A single voter's chain. */
+		democracy.delegate("W", "V99");
+		assertEquals("A", democracy.resolve("W"));
+		assertEquals(101, metrics.getMaxChainDepth());
+	}
+
+	/** Loaded with the calculated choices, the cycles are counted from the snapshot. */
+	@Test public void testLoadedCycles() throws IOException {
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		democracy.delegate("Alice", "Bob");
+		democracy.delegate("Bob", "Alice");
+		democracy.delegate("Carol", "Dave");
+		democracy.delegate("Dave", "Eve");
+		democracy.delegate("Eve", "Carol");
+		democracy.delegate("Mallory", "Eve");
+
+		Path file = Files.createTempFile("election", ".bin");
+		file.toFile().deleteOnExit();
+		democracy.save(file, true);
+
+		Metrics metrics = LiquidDemocracy.load(file).metrics();
+		assertEquals(2, metrics.getCycles());
+		assertEquals(5, metrics.getCycleParticipants());
+		assertEquals(6, metrics.getDelegations());
+	}
+
+	/** Registered as MXBean, read as JMX attributes. */
+	@Test public void testJmx() throws JMException {
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		Metrics metrics = democracy.metrics();
+		democracy.pick("Alice", "Pizza");
+		democracy.delegate("Bob", "Alice");
+		democracy.getResults();
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+		metrics.register();
+		try {
+			assertEquals(2, server.getAttribute(name, "Voters"));
+			assertEquals(1, server.getAttribute(name, "Delegations"));
+			assertEquals(2L, server.getAttribute(name, "CommandsAccepted"));
+			assertEquals(2, server.getAttribute(name, "MaxChainDepth"));
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package de.nox.liquiddemocracy;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/** The NameTableTest.
+ * Interning names to dense ids. */
+public class NameTableTest {
+
+	/** Ids are given in order of first appearance, known names keep their id. */
+	@Test public void testIntern() {
+		NameTable table = new NameTable();
+
+		assertEquals(0, table.intern("Alice"));
+		assertEquals(1, table.intern("Bob"));
+		assertEquals(0, table.intern("Alice")); // known
+		assertEquals(2, table.intern("alice")); // case sensitive
+		assertEquals(3, table.size());
+
+		assertEquals("Bob", table.name(1));
+		assertEquals(1, table.find("Bob"));
+		assertEquals(-1, table.find("Carol")); // never interned
+		assertEquals(3, table.size()); // find does not intern
+	}
+
+	/** Growing far beyond the initial capacity keeps all ids. */
+	@Test public void testGrow() {
+		NameTable table = new NameTable();
+		int count = 100_000;
+
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, table.intern("Voter " + i));
+		}
+
+		assertEquals(count, table.size());
+
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, table.find("Voter " + i));
+			assertEquals("Voter " + i, table.name(i));
+		}
+	}
+
+	/** Pre-sizing does not change given ids. */
+	@Test public void testEnsureCapacity() {
+		NameTable table = new NameTable();
+
+		table.intern("A");
+		table.intern("B");
+		table.ensureCapacity(10_000);
+
+		assertEquals(0, table.find("A"));
+		assertEquals(1, table.find("B"));
+		assertEquals(2, table.intern("C"));
+	}
+}
@@ -0,0 +1,157 @@
+package de.nox.liquiddemocracy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** The PipelinedReaderTest.
+ * Reading in stages (with tiny blocks and ring buffers) must be the same as reading line by line. */
+public class PipelinedReaderTest {
+
+	private static String votes(int lines) {
+		Random random = new Random(5);
+		StringBuilder text = new StringBuilder();
+
+		for (int i = 0; i < lines; i++) {
+			String voter = "V" + random.nextInt(500);
+			text.append(random.nextInt(3) == 0
+					? voter + " picks A" + random.nextInt(6)
+					: voter + " delegate V" + random.nextInt(500));
+			text.append(i % 7 == 0 ? "\r\n" : "\n");
+		}
+		return text.toString();
+	}
+
+	private static LiquidDemocracy readByLines(String text) {
+		LiquidDemocracy.Batch batch = new LiquidDemocracy.Batch();
+		Main.ReadCommand command = new Main.ReadCommand();
+
+		for (String line : text.split("\r\n|\r|\n")) {
+			if (line.length() == 0) break;
+			Main.readLine(line, command);
+			if (command.isValid()) Main.vote(batch, command);
+		}
+
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		democracy.applyBatch(batch);
+		return democracy;
+	}
+
+	/** Small blocks, so lines are carried over between blocks, and full ring buffers. */
+	@Test public void testStagesInOrder() throws IOException {
+		String text = votes(20_000);
+		LiquidDemocracy expected = readByLines(text);
+
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		PipelinedReader pipeline = new PipelinedReader(
+				new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), 64, 2);
+
+		assertFalse(pipeline.readInto(democracy::applyBatch));
+
+		assertEquals(expected.getResultingChoices(), democracy.getResultingChoices());
+		assertEquals(20_000, pipeline.parse.items);
+		assertEquals(20_000, pipeline.apply.items);
+		assertEquals(text.getBytes(StandardCharsets.UTF_8).length, pipeline.read.items);
+		assertTrue(pipeline.report().contains("[Pipeline] apply"));
+	}
+
+	/** Gzipped input, an empty line ends it early. */
+	@Test public void testGzipAndEmptyLine() throws IOException {
+		String text = votes(1000) + "\nLate pick Never\n" + votes(1000);
+
+		ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(zipped)) {
+			out.write(text.getBytes(StandardCharsets.UTF_8));
+		}
+
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		PipelinedReader pipeline = new PipelinedReader(
+				new GZIPInputStream(new ByteArrayInputStream(zipped.toByteArray())), 128, 2);
+
+		pipeline.readInto(democracy::applyBatch);
+
+		assertEquals(readByLines(votes(1000)).getResultingChoices(), democracy.getResultingChoices());
+		assertFalse(democracy.getVoters().contains("Late"));
+	}
+
+	/** Invalid lines are warned about in order. */
+	@Test public void testWarnings() throws IOException {
+		final PrintStream stderr = System.err;
+		final ByteArrayOutputStream monitorError = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(monitorError));
+
+		boolean warned;
+		try {
+			warned = new PipelinedReader(new ByteArrayInputStream("Dad\nAlice pick Pizza\n pick".getBytes()))
+				.readInto(new LiquidDemocracy()::applyBatch);
+		} finally {
+			System.setErr(stderr);
+		}
+
+		assertTrue(warned);
+		String warnings = monitorError.toString();
+		assertTrue(warnings.indexOf("(\"Dad\")") < warnings.indexOf("(\" pick\")"));
+	}
+
+	/** Much more input after the empty line than the ring buffers hold, the reader is stopped. */
+	@Test(timeout = 10_000) public void testEmptyLineBeforeMuchInput() throws IOException {
+		String text = votes(100) + "\n" + votes(20_000); // far more than 2 * 64 bytes.
+
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		new PipelinedReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), 64, 2)
+			.readInto(democracy::applyBatch);
+
+		assertEquals(readByLines(votes(100)).getResultingChoices(), democracy.getResultingChoices());
+	}
+
+	/** A failed parse is reported, and does not leave the reader waiting. */
+	@Test(timeout = 10_000) public void testParseFailure() {
+		byte[] text = votes(20_000).getBytes(StandardCharsets.UTF_8);
+		int[] blocks = {0};
+
+		PipelinedReader pipeline = new PipelinedReader(new ByteArrayInputStream(text), 64, 2, block -> {
+			if (++blocks[0] == 3) throw new IllegalStateException("Broken block");
+			return MappedFileReader.parse(block);
+		});
+
+		try {
+			pipeline.readInto(new LiquidDemocracy()::applyBatch);
+			fail("The parse failed.");
+		} catch (IOException e) {
+			assertEquals("Broken block", e.getCause().getMessage());
+		}
+	}
+
+	/** Lines ending with a bare '\r' (or "\r\n") are streamed block by block, not read as one growing block. */
+	@Test public void testCarriageReturns() throws IOException {
+		for (String lineEnd : new String[] {"\r", "\r\n"}) {
+			String text = votes(2000).replace("\r\n", "\n").replace("\n", lineEnd);
+			int[] blocks = {0};
+
+			LiquidDemocracy democracy = new LiquidDemocracy();
+			new PipelinedReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), 64, 2, block -> {
+				blocks[0]++;
+				return MappedFileReader.parse(block);
+			}).readInto(democracy::applyBatch);
+
+			assertEquals(readByLines(votes(2000)).getResultingChoices(), democracy.getResultingChoices());
+			assertTrue(blocks[0] > 100);
+		}
+
+		/* Not split between '\r' and '\n' (which would be an empty line, the end). */
+		assertEquals(0, PipelinedReader.lastLineEnd("A pick B\r".getBytes(StandardCharsets.UTF_8), 9));
+		assertEquals(10, PipelinedReader.lastLineEnd("A pick B\r\n".getBytes(StandardCharsets.UTF_8), 10));
+		assertEquals(9, PipelinedReader.lastLineEnd("A pick B\rC".getBytes(StandardCharsets.UTF_8), 10));
+	}
+}
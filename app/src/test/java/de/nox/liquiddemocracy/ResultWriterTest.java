@@ -0,0 +1,67 @@
+package de.nox.liquiddemocracy;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+
+/** The ResultWriterTest.
+ * The written bytes must be the same as printed with the formats. */
+public class ResultWriterTest {
+
+	/** Short, long, multi byte names, many votes (wider than the format's width). */
+	private static LiquidDemocracy democracy() {
+		Random random = new Random(31);
+		String[] alternatives = {"Pizza", "Salad", "Vegan Burger", "\u00c4pfel", "A very long alternative name", "x"};
+		LiquidDemocracy democracy = new LiquidDemocracy();
+
+		for (int i = 0; i < 30_000; i++) {
+			String voter = (i % 7 == 0 ? "a voter with a long name " : i % 11 == 0 ? "W\u00e4hler" : "V") + random.nextInt(15_000);
+			if (random.nextInt(3) == 0) democracy.pick(voter, alternatives[random.nextInt(alternatives.length)]);
+			else democracy.delegate(voter, "V" + random.nextInt(15_000));
+		}
+		return democracy;
+	}
+
+	private static byte[] written(LiquidDemocracy democracy, Charset charset, boolean open) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResultWriter writer = new ResultWriter(out, charset).writeResults(democracy.getResults());
+		if (open) writer.writeOpenVotes(democracy);
+		writer.flush();
+		return out.toByteArray();
+	}
+
+	/** As Main printed them before, with printf per line. */
+	private static byte[] printed(LiquidDemocracy democracy, Charset charset, boolean open) {
+		StringBuilder text = new StringBuilder();
+
+		democracy.getResults().choices.entrySet().stream()
+			.sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+			.forEach(e -> text.append(String.format(Main.RESULTF, e.getValue(), e.getKey())));
+		text.append(String.format(Main.RESULTF, democracy.getResults().invalidVoteCount, "Invalid"));
+
+		if (open) {
+			text.append("\nOpen Votes:\n");
+			democracy.forEachResultingChoice((voter, choice) -> {
+				if (choice != null) {
+					text.append(String.format("    %-15s -->  %15s\n", voter, choice));
+				} else {
+					text.append(String.format("  ! %-15s %21s\n", voter, "(invalid choice)"));
+				}
+			});
+		}
+		return text.toString().getBytes(charset);
+	}
+
+	@Test public void testSameBytes() {
+		LiquidDemocracy democracy = democracy();
+
+		for (Charset charset : new Charset[] {StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16}) {
+			assertArrayEquals(charset.name(), printed(democracy, charset, false), written(democracy, charset, false));
+			assertArrayEquals(charset.name(), printed(democracy, charset, true), written(democracy, charset, true));
+		}
+	}
+}
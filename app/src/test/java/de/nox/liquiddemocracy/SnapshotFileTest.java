@@ -0,0 +1,124 @@
+package de.nox.liquiddemocracy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/** The SnapshotFileTest.
+ * A loaded snapshot must be the same democracy as the saved one, also when voting on. */
+public class SnapshotFileTest {
+
+	private static Path tempFile() throws IOException {
+		Path file = Files.createTempFile("election", ".bin");
+		file.toFile().deleteOnExit();
+		return file;
+	}
+
+	/** Random votes with chains, cycles, invalid voters and multi byte names. */
+	private static void vote(Random random, int commands, LiquidDemocracy... democracies) {
+		for (int i = 0; i < commands; i++) {
+			String voter = "V\u00e9" + random.nextInt(500);
+			String target = "V\u00e9" + random.nextInt(500);
+			int kind = random.nextInt(10);
+
+			for (LiquidDemocracy democracy : democracies) {
+				if (kind < 3) democracy.pick(voter, "A" + (kind == 0 ? i % 7 : 0));
+				else if (kind < 9) democracy.delegate(voter, target);
+				else democracy.pick(voter, null);
+			}
+		}
+	}
+
+	private static void assertSame(LiquidDemocracy expected, LiquidDemocracy actual) {
+		assertEquals(expected.getVoters(), actual.getVoters());
+		assertEquals(expected.getAlternatives(), actual.getAlternatives());
+		assertEquals(expected.getResultingChoices(), actual.getResultingChoices());
+		assertEquals(expected.getCycleParticipants(), actual.getCycleParticipants());
+		assertEquals(expected.getResults().choices, actual.getResults().choices);
+		assertEquals(expected.getResults().invalidVoteCount, actual.getResults().invalidVoteCount);
+	}
+
+	/** Saved with and without the results, loaded and voted on: same as never saved. */
+	@Test public void testSaveLoad() throws IOException {
+		for (boolean withResults : new boolean[] {true, false}) {
+			Random random = new Random(5);
+			LiquidDemocracy original = new LiquidDemocracy();
+			vote(random, 5000, original);
+
+			Path file = tempFile();
+			original.save(file, withResults);
+			LiquidDemocracy loaded = LiquidDemocracy.load(file);
+
+			assertSame(original, loaded);
+
+			/* Re-votes after loading need the rebuilt delegations. */
+			vote(random, 2000, original, loaded);
+			assertSame(original, loaded);
+		}
+	}
+
+	/** Even nobody can be saved. */
+	@Test public void testEmpty() throws IOException {
+		Path file = tempFile();
+		new LiquidDemocracy().save(file, true);
+
+		LiquidDemocracy loaded = LiquidDemocracy.load(file);
+		assertEquals(0, loaded.getVoters().size());
+		assertEquals(0l, loaded.getResults().invalidVoteCount);
+
+		loaded.pick("A", "Pizza");
+		assertEquals(1l, loaded.getResults().choices.get("Pizza").longValue());
+	}
+
+	/** No snapshot or a cut off one. */
+	@Test public void testBrokenFile() throws IOException {
+		Path file = tempFile();
+		Files.write(file, "A pick Pizza\n".getBytes("UTF-8"));
+
+		try {
+			LiquidDemocracy.load(file);
+			fail("IOException for a text file not thrown.");
+		} catch (IOException e) {}
+
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		democracy.delegate("A", "B");
+		democracy.save(file, true);
+
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 6));
+
+		try {
+			LiquidDemocracy.load(file);
+			fail("IOException for a cut off snapshot not thrown.");
+		} catch (IOException e) {}
+	}
+
+	/** Broken ids of cycle participants: out of range, or a voter who is on no cycle. */
+	@Test public void testBrokenCycleParticipants() throws IOException {
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		democracy.delegate("A", "B");
+		democracy.delegate("B", "A");
+		democracy.pick("C", "Pizza");
+
+		Path file = tempFile();
+		democracy.save(file, true);
+		byte[] bytes = Files.readAllBytes(file);
+
+		for (int id : new int[] {99, -1, 2}) { // the last participant (B) replaced
+			ByteBuffer.wrap(bytes).putInt(bytes.length - Integer.BYTES, id);
+			Files.write(file, bytes);
+
+			try {
+				LiquidDemocracy.load(file);
+				fail("IOException for cycle participant " + id + " not thrown.");
+			} catch (IOException e) {}
+		}
+	}
+}
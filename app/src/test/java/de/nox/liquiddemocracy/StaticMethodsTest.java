@@ -7,6 +7,7 @@ import java.io.PrintStream;
 import java.io.InputStream;
 import java.util.Scanner;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
@@ -79,6 +80,54 @@ public class StaticMethodsTest {
 		}
 	}
 
+	/** The former regex parsing of Main.readLine, as reference. */
+	private static Main.ReadCommand readLineByRegex(String line) {
+		String[] words = line.split("\\s+(?=(pick|delegates?))|(?<=(pick|delegate))s?\\s+");
+
+		return new Main.ReadCommand(
+				words.length > 0 && words[0].length() > 0 ? words[0].trim() : null,
+				words.length > 1 && words[1].matches("(pick|delegate)") ? words[1] : null,
+				words.length > 2 && words[2].length() > 0 ? words[2].trim() : null
+				);
+	}
+
+	/** The tokenizer parses exactly like the former regex split.
+	 * Random lines built from verbs, names and all kinds of white space. */
+	@Test
+	public void testParseLineLikeRegex() {
+		String[] pieces = {
+			"pick", "picks", "delegate", "delegates", "Alice", "s", "x", "pickle", "delegated",
+			" ", "  ", "\t", " \t ", "\r", "\f", "\u000B"
+		};
+
+		Random random = new Random(1);
+		Main.ReadCommand cmd = new Main.ReadCommand(); // reused
+
+		for (int i = 0; i < 100_000; i++) {
+			StringBuilder line = new StringBuilder();
+			for (int j = random.nextInt(8); j > 0; j--) line.append(pieces[random.nextInt(pieces.length)]);
+
+			Main.ReadCommand expectedCmd = readLineByRegex(line.toString());
+			Main.readLine(line, cmd);
+
+			String message = "\"" + line + "\"";
+			assertEquals(message, expectedCmd.voter, cmd.voter);
+			assertEquals(message, expectedCmd.action, cmd.action);
+			assertEquals(message, expectedCmd.choice, cmd.choice);
+		}
+	}
+
+	/** Test Main.topOption: a positive number, otherwise rejected. */
+	@Test
+	public void testTopOption() {
+		assertEquals(0, Main.topOption(new String[]{"--open"}));
+		assertEquals(3, Main.topOption(new String[]{"--top", "3", "--open"}));
+		assertEquals(-1, Main.topOption(new String[]{"--top", "0"}));
+		assertEquals(-1, Main.topOption(new String[]{"--top", "-1"}));
+		assertEquals(-1, Main.topOption(new String[]{"--top", "three"}));
+		assertEquals(-1, Main.topOption(new String[]{"--open", "--top"}));
+	}
+
 	/** Test Main.printSortedResult.
 	 * Out put should be in Sytem.out, the Output should also be ordered and formatted.
 	 * But keep invalids to the end.
@@ -119,7 +168,7 @@ public class StaticMethodsTest {
 		assertEquals(out, monitorOut.toString());
 
 		// clear stream.
-		((ByteArrayOutputStream) monitorOut).reset();
+		monitorOut.reset();
 
 		// ---
 
@@ -138,7 +187,7 @@ public class StaticMethodsTest {
 		assertEquals(out, monitorOut.toString());
 
 		// clear stream.
-		((ByteArrayOutputStream) monitorOut).reset();
+		monitorOut.reset();
 
 		// ---
 
@@ -209,7 +258,7 @@ public class StaticMethodsTest {
 
 		assertEquals(expected, monitored);
 		assertTrue(monitorError.toString().length() > 0); // printed some warning for sure.
-		((ByteArrayOutputStream) monitorOut).reset();
+		monitorOut.reset();
 
 		// insert again.
 		System.setIn(new ByteArrayInputStream(input.getBytes()));
@@ -220,6 +269,6 @@ public class StaticMethodsTest {
 
 		assertTrue(monitored.startsWith(expected + "\nOpen Votes:"));
 		// contains lines. but not always in the same order.
-		((ByteArrayOutputStream) monitorOut).reset();
+		monitorOut.reset();
 	}
 }
@@ -0,0 +1,66 @@
+package de.nox.liquiddemocracy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** The StripedNameTableTest.
+ * Interning from many threads: each name gets one id, which never changes. */
+public class StripedNameTableTest {
+
+	/** Known names keep their id, ids and names map both ways. */
+	@Test public void testIntern() {
+		StripedNameTable table = new StripedNameTable(4);
+
+		int alice = table.intern("Alice");
+		int bob = table.intern("Bob");
+
+		assertEquals(alice, table.intern("Alice")); // known
+		assertTrue(alice != bob);
+		assertEquals("Bob", table.name(bob));
+		assertEquals(bob, table.find("Bob"));
+		assertEquals(-1, table.find("Carol")); // never interned
+		assertEquals(2, table.size()); // find does not intern
+
+		String[] names = table.names();
+		assertEquals("Alice", names[alice]);
+		assertEquals("Bob", names[bob]);
+	}
+
+	/** Threads interning overlapping names: one id per name, the names merged by id. */
+	@Test public void testThreads() throws InterruptedException {
+		StripedNameTable table = new StripedNameTable(8);
+		int threads = 8, count = 20_000;
+		int[][] ids = new int[threads][count];
+		List<Thread> interning = new ArrayList<>();
+
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			interning.add(new Thread(() -> {
+				for (int i = 0; i < count; i++) ids[thread][i] = table.intern("Voter " + ((i * 7 + thread) % count));
+			}));
+		}
+		for (Thread thread : interning) thread.start();
+		for (Thread thread : interning) thread.join();
+
+		assertEquals(count, table.size());
+
+		Set<Integer> distinct = new HashSet<>();
+		String[] names = table.names();
+		for (int i = 0; i < count; i++) {
+			int id = table.find("Voter " + i);
+			assertTrue(distinct.add(id));
+			assertEquals("Voter " + i, table.name(id));
+			assertEquals("Voter " + i, names[id]);
+		}
+
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < count; i++) assertEquals(table.find("Voter " + ((i * 7 + t) % count)), ids[t][i]);
+		}
+	}
+}
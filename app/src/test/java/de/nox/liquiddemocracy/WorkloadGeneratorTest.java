@@ -0,0 +1,75 @@
+package de.nox.liquiddemocracy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** The WorkloadGeneratorTest.
+ * The generated elections are reproducible and have the requested shape. */
+public class WorkloadGeneratorTest {
+
+	private static byte[] generate(WorkloadGenerator generator) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		generator.write(out);
+		return out.toByteArray();
+	}
+
+	/** Same seed, same bytes; another seed, other bytes. */
+	@Test public void testSeeded() throws IOException {
+		WorkloadGenerator generator = new WorkloadGenerator();
+		generator.voters = 10_000;
+
+		byte[] first = generate(generator);
+		assertArrayEquals(first, generate(generator));
+
+		generator.seed = 2;
+		assertFalse(Arrays.equals(first, generate(generator)));
+	}
+
+	/** Every voter votes, the rates are about as requested. */
+	@Test public void testShape() throws IOException {
+		WorkloadGenerator generator = new WorkloadGenerator();
+		generator.voters = 100_000;
+		generator.alternatives = 3;
+		generator.delegation = 0.5;
+		generator.cycles = 0.1;
+		generator.revotes = 0.2;
+		generator.malformed = 0.01;
+
+		String text = new String(generate(generator), StandardCharsets.US_ASCII);
+		String[] lines = text.split("\n");
+
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		LiquidDemocracy.Batch batch = new LiquidDemocracy.Batch();
+		Main.ReadCommand command = new Main.ReadCommand();
+		int invalid = 0;
+
+		for (String line : lines) {
+			assertTrue(line.length() > 0); // no empty line, it would end the input.
+
+			Main.readLine(line, command);
+			if (command.isValid()) Main.vote(batch, command);
+			else invalid++;
+		}
+		democracy.applyBatch(batch);
+
+		/* About 120 000 lines, 1% of them malformed. */
+		assertTrue(lines.length > 110_000 && lines.length < 130_000);
+		assertTrue(invalid > lines.length / 200 && invalid < lines.length / 50);
+
+		/* All voters, without the few only with a malformed line. */
+		assertTrue(democracy.getVoters().size() > 99_000);
+		assertEquals(3, democracy.getAlternatives().size());
+
+		/* About 10% in cycles. */
+		int inCycles = democracy.getCycleParticipants().size();
+		assertTrue("" + inCycles, inCycles > 7_000 && inCycles < 13_000);
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * JMH benchmarks of the liquid democracy (parsing, ingestion, resolution, results).
+ *
+ * Run all of them with
+ *   gradle :jmh:jmh
+ * or pass JMH arguments, e.g. only resolution of 20M voters with more memory:
+ *   gradle :jmh:jmh -Pjmh.args="Resolve -p voters=20000000 -jvmArgsAppend -Xmx16g"
+ */
+
+plugins {
+    java
+}
+
+repositories {
+    // Use Maven Central for resolving dependencies.
+    mavenCentral()
+}
+
+dependencies {
+    // The benchmarked code.
+    implementation(project(":app"))
+
+    // JMH and its annotation processor (generates the benchmark classes).
+    implementation("org.openjdk.jmh:jmh-core:1.37")
+    annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+// run the benchmarks.
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks, JMH arguments with -Pjmh.args=\"...\"."
+    group = "verification"
+
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args = (project.findProperty("jmh.args") as String? ?: "").split(" ").filter { it.isNotBlank() }
+}
@@ -0,0 +1,56 @@
+package de.nox.liquiddemocracy.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.nox.liquiddemocracy.LiquidDemocracy;
+
+/** The IngestBenchmark.
+ * Voting all commands of a topology into a new democracy (without calculating). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IngestBenchmark {
+
+	@Param({"10000", "1000000"})
+	public int voters;
+
+	@Param({"CHAIN", "STAR", "TREE", "SMALL_CYCLES", "GIANT_CYCLE", "RANDOM"})
+	public Topology topology;
+
+	private Topology.Commands commands;
+	private LiquidDemocracy.Batch batch;
+
+	@Setup public void setup() {
+		commands = topology.generate(voters, 42);
+		batch = commands.toBatch();
+	}
+
+	/** One pick / delegate call per command. */
+	@Benchmark public LiquidDemocracy pickAndDelegate() {
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		commands.voteInto(democracy);
+		return democracy;
+	}
+
+	/** All commands as one batch. */
+	@Benchmark public LiquidDemocracy applyBatch() {
+		LiquidDemocracy democracy = new LiquidDemocracy();
+		democracy.applyBatch(batch);
+		return democracy;
+	}
+}
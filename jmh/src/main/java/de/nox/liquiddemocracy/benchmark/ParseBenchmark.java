@@ -0,0 +1,43 @@
+package de.nox.liquiddemocracy.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.nox.liquiddemocracy.Main;
+
+/** The ParseBenchmark.
+ * Parsing input lines into commands (Main.readLine), per line. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+	static final int LINES = 1 << 12;
+
+	private String[] lines;
+
+	@Setup public void setup() {
+		lines = Topology.RANDOM.generate(LINES, 42).toLines();
+	}
+
+	/** A new command per line. */
+	@Benchmark @OperationsPerInvocation(LINES)
+	public void readLine(Blackhole blackhole) {
+		for (String line : lines) blackhole.consume(Main.readLine(line));
+	}
+}
@@ -0,0 +1,77 @@
+package de.nox.liquiddemocracy.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.nox.liquiddemocracy.LiquidDemocracy;
+
+/** The ResolveBenchmark.
+ * Calculating the choices of all voters (the first getResults after voting),
+ * and getting the results again when nothing changed. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResolveBenchmark {
+
+	@Param({"10000", "1000000"})
+	public int voters;
+
+	@Param({"CHAIN", "STAR", "TREE", "SMALL_CYCLES", "GIANT_CYCLE", "RANDOM"})
+	public Topology topology;
+
+	@Param({"false", "true"})
+	public boolean parallel;
+
+	private LiquidDemocracy.Batch batch;
+	private LiquidDemocracy democracy;
+
+	@Setup public void generate() {
+		batch = topology.generate(voters, 42).toBatch();
+	}
+
+	/** A voted, not yet calculated democracy for each (single shot) iteration. */
+	@Setup(Level.Iteration) public void vote() {
+		democracy = new LiquidDemocracy();
+		democracy.setParallel(parallel);
+		democracy.applyBatch(batch);
+	}
+
+	/** Calculate everyone. */
+	@Benchmark public LiquidDemocracy.Result resolve() {
+		return democracy.getResults();
+	}
+
+	/** A voted and already calculated democracy, so no call pays for the calculation. */
+	@State(Scope.Benchmark)
+	public static class Calculated {
+		LiquidDemocracy democracy;
+
+		@Setup public void calculate(ResolveBenchmark benchmark) {
+			democracy = new LiquidDemocracy();
+			democracy.setParallel(benchmark.parallel);
+			democracy.applyBatch(benchmark.batch);
+			democracy.getResults();
+		}
+	}
+
+	/** Calculated already: only the results map. */
+	@Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public LiquidDemocracy.Result getResults(Calculated calculated) {
+		return calculated.democracy.getResults();
+	}
+}
@@ -0,0 +1,125 @@
+package de.nox.liquiddemocracy.benchmark;
+
+import java.util.SplittableRandom;
+
+import de.nox.liquiddemocracy.LiquidDemocracy;
+
+/** The Topology.
+ * Synthetic delegation graphs for the benchmarks, each voter gives exactly one command.
+ * Voters are named "V{i}", the alternatives "A{j}" (of 16).
+ */
+public enum Topology {
+
+	/** V0 picks, everyone delegates to the one before: one chain as long as the electorate. */
+	CHAIN {
+		@Override int target(int v, int voters, SplittableRandom random) {
+			return v == 0 ? PICK : v - 1;
+		}
+	},
+
+	/** V0 picks, everyone else delegates to V0. */
+	STAR {
+		@Override int target(int v, int voters, SplittableRandom random) {
+			return v == 0 ? PICK : 0;
+		}
+	},
+
+	/** Binary tree: V0 picks, everyone delegates to their parent (depth log2 of the voters). */
+	TREE {
+		@Override int target(int v, int voters, SplittableRandom random) {
+			return v == 0 ? PICK : (v - 1) >> 1;
+		}
+	},
+
+	/** Cycles of three voters, everyone invalid. */
+	SMALL_CYCLES {
+		@Override int target(int v, int voters, SplittableRandom random) {
+			int first = v - v % 3;
+			int next = first + (v - first + 1) % 3;
+			return next < voters ? next : first; // the last group may be smaller.
+		}
+	},
+
+	/** Everyone delegates to the next one, the last to V0: one cycle of all voters. */
+	GIANT_CYCLE {
+		@Override int target(int v, int voters, SplittableRandom random) {
+			return (v + 1) % voters;
+		}
+	},
+
+	/** A tenth picks, the others delegate to anyone: forests, chains, some cycles. */
+	RANDOM {
+		@Override int target(int v, int voters, SplittableRandom random) {
+			return random.nextInt(10) == 0 ? PICK : random.nextInt(voters);
+		}
+	};
+
+	static final int ALTERNATIVES = 16;
+
+	/** Marker of target(): the voter picks an alternative. */
+	private static final int PICK = -1;
+
+	/** The voter id the given voter delegates to, or PICK. */
+	abstract int target(int v, int voters, SplittableRandom random);
+
+	/** The commands of all voters (voters, targets and whether it is a delegation). */
+	public static final class Commands {
+		public final String[] voters, targets;
+		public final boolean[] delegations;
+
+		Commands(int size) {
+			this.voters = new String[size];
+			this.targets = new String[size];
+			this.delegations = new boolean[size];
+		}
+
+		public int size() {
+			return voters.length;
+		}
+
+		/** One pick or delegate call per command. */
+		public void voteInto(LiquidDemocracy democracy) {
+			for (int i = 0; i < voters.length; i++) {
+				if (delegations[i]) democracy.delegate(voters[i], targets[i]);
+				else democracy.pick(voters[i], targets[i]);
+			}
+		}
+
+		/** All commands as one batch. */
+		public LiquidDemocracy.Batch toBatch() {
+			LiquidDemocracy.Batch batch = new LiquidDemocracy.Batch(voters.length);
+			for (int i = 0; i < voters.length; i++) {
+				if (delegations[i]) batch.delegate(voters[i], targets[i]);
+				else batch.pick(voters[i], targets[i]);
+			}
+			return batch;
+		}
+
+		/** The commands as input lines ("V1 delegates V0"). */
+		public String[] toLines() {
+			String[] lines = new String[voters.length];
+			for (int i = 0; i < voters.length; i++) {
+				lines[i] = voters[i] + (delegations[i] ? " delegates " : " pick ") + targets[i];
+			}
+			return lines;
+		}
+	}
+
+	/** Generate the commands of this topology, in voter order (deterministic for the seed). */
+	public Commands generate(int voters, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		Commands commands = new Commands(voters);
+
+		String[] names = new String[voters];
+		for (int v = 0; v < voters; v++) names[v] = "V" + v;
+
+		for (int v = 0; v < voters; v++) {
+			int target = target(v, voters, random);
+
+			commands.voters[v] = names[v];
+			commands.delegations[v] = target != PICK;
+			commands.targets[v] = target != PICK ? names[target] : "A" + random.nextInt(ALTERNATIVES);
+		}
+		return commands;
+	}
+}
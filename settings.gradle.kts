@@ -9,3 +9,4 @@
 
 rootProject.name = "liquid-democracy"
 include("app")
+include("jmh") // benchmarks